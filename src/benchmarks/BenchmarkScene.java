@@ -0,0 +1,63 @@
+package benchmarks;
+
+import fixed.SphericalObstacle;
+import math.Vec3;
+import processing.core.PApplet;
+import robot.input.SphericalAgentDescription;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class BenchmarkScene {
+    // Obstacles of radius 1 on a jittered 4 unit grid in the x = 0 plane (like demos.BSHSpeedUp)
+    // Jitter is below half the spacing so that no obstacle contains another, as BSHConfigurationSpace requires
+    public static float GRID_SPACING = 4;
+    public static float OBSTACLE_RADIUS = 1;
+    public static float FILL_PROBABILITY = 0.5f;
+    public static float AGENT_RADIUS = 0.5f;
+    public static float CLEARANCE_AROUND_ENDS = 10;
+
+    public final PApplet parent;
+    public final float side;
+    public final Vec3 minCorner;
+    public final Vec3 maxCorner;
+    public final Vec3 startPosition;
+    public final Vec3 finishPosition;
+    public final SphericalAgentDescription sphericalAgentDescription;
+    public final List<SphericalObstacle> sphericalObstacles = new ArrayList<>();
+
+    public BenchmarkScene(int numObstacles, long seed) {
+        // A renderer is never created, so the applet only serves as a seeded random source
+        this.parent = new PApplet();
+        parent.randomSeed(seed);
+        Random random = new Random(seed);
+        int cellsPerSide = (int) Math.ceil(Math.sqrt(numObstacles / FILL_PROBABILITY));
+        this.side = cellsPerSide * GRID_SPACING;
+        this.minCorner = Vec3.of(0, -side / 2, -side / 2);
+        this.maxCorner = Vec3.of(0, side / 2, side / 2);
+        this.startPosition = Vec3.of(0, side * 0.45f, side * -0.45f);
+        this.finishPosition = Vec3.of(0, side * -0.45f, side * 0.45f);
+        this.sphericalAgentDescription = new SphericalAgentDescription(startPosition, finishPosition, AGENT_RADIUS);
+        // Every cell holds at most one obstacle, cells are taken in a seeded random order
+        List<Integer> cells = new ArrayList<>();
+        for (int i = 0; i < cellsPerSide * cellsPerSide; i++) {
+            cells.add(i);
+        }
+        Collections.shuffle(cells, random);
+        float maxJitter = GRID_SPACING / 2 - OBSTACLE_RADIUS;
+        for (int cell : cells) {
+            if (sphericalObstacles.size() == numObstacles) {
+                break;
+            }
+            Vec3 center = Vec3.of(0,
+                    -side / 2 + GRID_SPACING * (cell / cellsPerSide + 0.5f) + maxJitter * (2 * random.nextFloat() - 1),
+                    -side / 2 + GRID_SPACING * (cell % cellsPerSide + 0.5f) + maxJitter * (2 * random.nextFloat() - 1));
+            if (center.minus(startPosition).norm() < CLEARANCE_AROUND_ENDS || center.minus(finishPosition).norm() < CLEARANCE_AROUND_ENDS) {
+                continue;
+            }
+            sphericalObstacles.add(new SphericalObstacle(parent, center, OBSTACLE_RADIUS, Vec3.of(1, 0, 1)));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package benchmarks;
+
+import fixed.SphericalObstacle;
+import math.Vec3;
+import robot.acting.FreeAgent;
+import robot.acting.FreeAgentSystem;
+import robot.acting.MultiSphericalAgentSystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class BoidsKernelBenchmark {
+    public static int[] NUM_AGENTS = {1000, 10000, 100000};
+    // Expected number of agents inside the impact sphere of an agent
+    public static float NEIGHBOUR_DENSITY = 30;
+    public static int WARMUP_STEPS = 5;
+    public static int MEASURED_STEPS = 10;
+    public static long SEED = 5611;
+
+    private static FreeAgentSystem createFlock(int numAgents) {
+        Random random = new Random(SEED);
+        float impactVolume = (float) (4 * Math.PI / 3 * Math.pow(FreeAgent.IMPACT_RADIUS, 3));
+        float side = (float) Math.cbrt(numAgents * impactVolume / NEIGHBOUR_DENSITY);
+        Vec3 minCorner = Vec3.of(-side / 2);
+        Vec3 maxCorner = Vec3.of(side / 2);
+        FreeAgentSystem freeAgentSystem = new FreeAgentSystem();
+        for (int i = 0; i < numAgents; i++) {
+            freeAgentSystem.add(new FreeAgent(
+                    Vec3.of(side * (random.nextFloat() - 0.5f), side * (random.nextFloat() - 0.5f), side * (random.nextFloat() - 0.5f)),
+                    Vec3.of(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f),
+                    Vec3.of(1),
+                    1,
+                    null,
+                    minCorner,
+                    maxCorner
+            ));
+        }
+        return freeAgentSystem;
+    }
+
+    private static double millisPerStep(int numAgents, List<SphericalObstacle> obstacles) {
+        FreeAgentSystem freeAgentSystem = createFlock(numAgents);
+        for (int i = 0; i < WARMUP_STEPS; i++) {
+            freeAgentSystem.update(obstacles, 0.1f);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_STEPS; i++) {
+            freeAgentSystem.update(obstacles, 0.1f);
+        }
+        return (System.nanoTime() - start) / 1e6 / MEASURED_STEPS;
+    }
+
+    private static float maxDeviationAfterOneStep(int numAgents, List<SphericalObstacle> obstacles) {
+        FreeAgentSystem.USE_PACKED_KERNEL = false;
+        FreeAgentSystem objectBased = createFlock(numAgents);
+        objectBased.update(obstacles, 0.1f);
+        FreeAgentSystem.USE_PACKED_KERNEL = true;
+        FreeAgentSystem packed = createFlock(numAgents);
+        packed.update(obstacles, 0.1f);
+        float maxDeviation = 0;
+        for (int i = 0; i < numAgents; i++) {
+            Vec3 c1 = objectBased.freeAgents.get(i).getCenter();
+            Vec3 c2 = packed.freeAgents.get(i).getCenter();
+            maxDeviation = Math.max(maxDeviation, c1.minus(c2).norm());
+        }
+        return maxDeviation;
+    }
+
+    public static void main(String[] args) {
+        List<SphericalObstacle> obstacles = new ArrayList<>();
+        boolean previousUsePackedKernel = FreeAgentSystem.USE_PACKED_KERNEL;
+        boolean previousParallel = MultiSphericalAgentSystem.PARALLEL_LOCAL_INTERACTIONS;
+        System.out.println("agents, threads, object ms/step, packed ms/step, speedup, max deviation");
+        for (boolean parallel : new boolean[]{false, true}) {
+            MultiSphericalAgentSystem.PARALLEL_LOCAL_INTERACTIONS = parallel;
+            for (int numAgents : NUM_AGENTS) {
+                FreeAgentSystem.USE_PACKED_KERNEL = false;
+                double objectBased = millisPerStep(numAgents, obstacles);
+                FreeAgentSystem.USE_PACKED_KERNEL = true;
+                double packed = millisPerStep(numAgents, obstacles);
+                float maxDeviation = maxDeviationAfterOneStep(numAgents, obstacles);
+                System.out.println(String.format("%d, %s, %.2f, %.2f, %.2fx, %.2e",
+                        numAgents, parallel ? "all" : "1", objectBased, packed, objectBased / packed, maxDeviation));
+            }
+        }
+        FreeAgentSystem.USE_PACKED_KERNEL = previousUsePackedKernel;
+        MultiSphericalAgentSystem.PARALLEL_LOCAL_INTERACTIONS = previousParallel;
+    }
+}
@@ -0,0 +1,62 @@
+package benchmarks;
+
+import math.Vec3;
+import robot.planning.sampling.UniformSampler;
+import robot.sensing.BSHConfigurationSpace;
+import robot.sensing.ConfigurationSpace;
+import robot.sensing.PlainConfigurationSpace;
+
+import java.util.List;
+
+public class CollisionBenchmark {
+    public static int[] NUM_OBSTACLES = {1000, 10000, 40000};
+    public static int NUM_QUERIES = 10000;
+    public static float MAX_EDGE_LEN = 20f;
+    public static long SEED = 5611;
+
+    private static void measureQueries(String name, BenchmarkScene scene, ConfigurationSpace configurationSpace,
+                                       List<Vec3> points, List<Vec3> edgeEnds) {
+        int size = scene.sphericalObstacles.size();
+        Harness.measure(name + " vertex queries", size, () -> () -> {
+            int numIntersecting = 0;
+            for (Vec3 point : points) {
+                if (configurationSpace.doesVertexIntersectSomeObstacle(point)) {
+                    numIntersecting++;
+                }
+            }
+            Harness.consume(numIntersecting);
+        });
+        Harness.measure(name + " edge queries", size, () -> () -> {
+            int numIntersecting = 0;
+            for (int i = 0; i < points.size(); i++) {
+                if (configurationSpace.doesEdgeIntersectSomeObstacle(points.get(i), edgeEnds.get(i))) {
+                    numIntersecting++;
+                }
+            }
+            Harness.consume(numIntersecting);
+        });
+    }
+
+    public static void run() {
+        for (int numObstacles : NUM_OBSTACLES) {
+            BenchmarkScene scene = new BenchmarkScene(numObstacles, SEED);
+            List<Vec3> points = new UniformSampler(scene.parent, scene.minCorner, scene.maxCorner).sample(NUM_QUERIES);
+            // Edges of random direction and length up to the roadmap edge length
+            List<Vec3> edgeEnds = new UniformSampler(scene.parent, Vec3.of(0, -MAX_EDGE_LEN, -MAX_EDGE_LEN), Vec3.of(0, MAX_EDGE_LEN, MAX_EDGE_LEN)).sample(NUM_QUERIES);
+            for (int i = 0; i < NUM_QUERIES; i++) {
+                edgeEnds.set(i, points.get(i).plus(edgeEnds.get(i).normalize().scale(Math.min(edgeEnds.get(i).norm(), MAX_EDGE_LEN))));
+            }
+            Harness.measure("Plain creation", numObstacles, () -> () ->
+                    Harness.consume(new PlainConfigurationSpace(scene.parent, scene.sphericalAgentDescription, scene.sphericalObstacles)));
+            Harness.measure("BSH creation", numObstacles, () -> () ->
+                    Harness.consume(new BSHConfigurationSpace(scene.parent, scene.sphericalAgentDescription, scene.sphericalObstacles)));
+            measureQueries("Plain", scene, new PlainConfigurationSpace(scene.parent, scene.sphericalAgentDescription, scene.sphericalObstacles), points, edgeEnds);
+            measureQueries("BSH", scene, new BSHConfigurationSpace(scene.parent, scene.sphericalAgentDescription, scene.sphericalObstacles), points, edgeEnds);
+        }
+    }
+
+    public static void main(String[] args) {
+        run();
+        Harness.printResults();
+    }
+}
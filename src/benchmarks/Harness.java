@@ -0,0 +1,58 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+public class Harness {
+    // Minimal stand in for JMH: untimed per iteration setup, warmup iterations and a sink for results
+    public static int WARMUP_ITERATIONS = 3;
+    public static int MEASURED_ITERATIONS = 10;
+
+    // Results are folded in here so that the JIT cannot drop the measured work
+    private static int sink = 0;
+    // Planners log to stdout while measured, so results are printed together at the end
+    private static final List<String> results = new ArrayList<>();
+
+    public static void consume(Object result) {
+        sink += System.identityHashCode(result);
+    }
+
+    public static void consume(boolean result) {
+        sink += result ? 1 : 0;
+    }
+
+    public static void printResults() {
+        System.out.println("benchmark, size, mean ms, stddev ms, min ms");
+        for (String result : results) {
+            System.out.println(result);
+        }
+        results.clear();
+    }
+
+    public static void measure(String benchmark, int size, Supplier<Runnable> setup) {
+        // setup is called before every iteration and is not timed, the returned operation is
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            setup.get().run();
+        }
+        double sum = 0;
+        double sumOfSquares = 0;
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            Runnable operation = setup.get();
+            long start = System.nanoTime();
+            operation.run();
+            double millis = (System.nanoTime() - start) / 1e6;
+            sum += millis;
+            sumOfSquares += millis * millis;
+            min = Math.min(min, millis);
+        }
+        double mean = sum / MEASURED_ITERATIONS;
+        double stddev = Math.sqrt(Math.max(0, sumOfSquares / MEASURED_ITERATIONS - mean * mean));
+        results.add(String.format("%s, %d, %.3f, %.3f, %.3f", benchmark, size, mean, stddev, min));
+    }
+
+    public static int getSink() {
+        return sink;
+    }
+}
@@ -0,0 +1,14 @@
+package benchmarks;
+
+public class HotPathBenchmarks {
+    // Runs every suite headless, e.g. java -cp "out:jars/*" benchmarks.HotPathBenchmarks > results.csv
+    public static void main(String[] args) {
+        CollisionBenchmark.run();
+        RoadmapBenchmark.run();
+        TreeBenchmark.run();
+        LocalInteractionBenchmark.run();
+        Harness.printResults();
+        BoidsKernelBenchmark.main(args);
+        System.err.println("sink: " + Harness.getSink());
+    }
+}
@@ -0,0 +1,71 @@
+package benchmarks;
+
+import math.Vec3;
+import robot.acting.MultiSphericalAgentSystem;
+import robot.input.SphericalAgentDescription;
+import robot.planning.sampling.UniformSampler;
+import robot.sensing.BSHConfigurationSpace;
+import robot.sensing.ConfigurationSpace;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LocalInteractionBenchmark {
+    // Free flocks are covered by BoidsKernelBenchmark, this one steps planned agents among obstacles
+    public static int[] NUM_OBSTACLES = {1000, 10000};
+    public static int[] NUM_AGENTS = {100, 1000};
+    // Roadmap density that keeps the scenes connected
+    public static float VERTEX_SPACING = 8f;
+    public static float MAX_EDGE_LEN = 20f;
+    public static int STEPS_PER_ITERATION = 10;
+    public static float DT = 0.05f;
+    public static long SEED = 5611;
+
+    private static MultiSphericalAgentSystem createSystem(BenchmarkScene scene, ConfigurationSpace configurationSpace, int numAgents) {
+        scene.parent.randomSeed(SEED);
+        UniformSampler sampler = new UniformSampler(scene.parent, scene.minCorner, scene.maxCorner);
+        List<SphericalAgentDescription> sphericalAgentDescriptions = new ArrayList<>();
+        while (sphericalAgentDescriptions.size() < numAgents) {
+            List<Vec3> ends = sampler.sample(2);
+            if (configurationSpace.doesVertexIntersectSomeObstacle(ends.get(0)) || configurationSpace.doesVertexIntersectSomeObstacle(ends.get(1))) {
+                continue;
+            }
+            sphericalAgentDescriptions.add(new SphericalAgentDescription(ends.get(0), ends.get(1), BenchmarkScene.AGENT_RADIUS));
+        }
+        MultiSphericalAgentSystem system = new MultiSphericalAgentSystem(scene.parent, sphericalAgentDescriptions, configurationSpace, scene.minCorner, scene.maxCorner);
+        system.aStar();
+        return system;
+    }
+
+    public static void run() {
+        int previousNumVertexSamples = MultiSphericalAgentSystem.NUM_VERTEX_SAMPLES;
+        float previousMaxEdgeLen = MultiSphericalAgentSystem.MAX_EDGE_LEN;
+        MultiSphericalAgentSystem.MAX_EDGE_LEN = MAX_EDGE_LEN;
+        for (int numObstacles : NUM_OBSTACLES) {
+            BenchmarkScene scene = new BenchmarkScene(numObstacles, SEED);
+            ConfigurationSpace configurationSpace = new BSHConfigurationSpace(scene.parent, scene.sphericalAgentDescription, scene.sphericalObstacles);
+            MultiSphericalAgentSystem.NUM_VERTEX_SAMPLES = (int) (scene.side * scene.side / (VERTEX_SPACING * VERTEX_SPACING));
+            for (int numAgents : NUM_AGENTS) {
+                // One system per size, every iteration continues stepping it
+                MultiSphericalAgentSystem system = createSystem(scene, configurationSpace, numAgents);
+                Harness.measure("updateTTC x" + STEPS_PER_ITERATION + " " + numAgents + " agents", numObstacles, () -> () -> {
+                    for (int i = 0; i < STEPS_PER_ITERATION; i++) {
+                        system.updateTTC(scene.sphericalObstacles, DT);
+                    }
+                });
+                Harness.measure("updateBoid x" + STEPS_PER_ITERATION + " " + numAgents + " agents", numObstacles, () -> () -> {
+                    for (int i = 0; i < STEPS_PER_ITERATION; i++) {
+                        system.updateBoid(scene.sphericalObstacles, DT);
+                    }
+                });
+            }
+        }
+        MultiSphericalAgentSystem.NUM_VERTEX_SAMPLES = previousNumVertexSamples;
+        MultiSphericalAgentSystem.MAX_EDGE_LEN = previousMaxEdgeLen;
+    }
+
+    public static void main(String[] args) {
+        run();
+        Harness.printResults();
+    }
+}
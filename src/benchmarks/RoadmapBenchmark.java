@@ -0,0 +1,60 @@
+package benchmarks;
+
+import math.Vec3;
+import robot.planning.multiagentgraph.MultiAgentGraph;
+import robot.planning.sampling.UniformSampler;
+import robot.sensing.BSHConfigurationSpace;
+import robot.sensing.ConfigurationSpace;
+
+import java.util.List;
+
+public class RoadmapBenchmark {
+    public static int[] NUM_OBSTACLES = {1000, 10000, 40000};
+    // # vertex samples is chosen so that samples are this far apart on average
+    public static float VERTEX_SPACING = 8f;
+    public static float MAX_EDGE_LEN = 20f;
+    public static long SEED = 5611;
+
+    private static MultiAgentGraph createGraph(BenchmarkScene scene, List<Vec3> vertexPositions, ConfigurationSpace configurationSpace) {
+        MultiAgentGraph graph = new MultiAgentGraph(scene.parent, scene.startPosition, scene.finishPosition);
+        graph.generateVertices(vertexPositions, configurationSpace);
+        return graph;
+    }
+
+    public static void run() {
+        boolean previousCachePaths = MultiAgentGraph.CACHE_PATHS;
+        // Every search iteration should do the search, not hit the cache
+        MultiAgentGraph.CACHE_PATHS = false;
+        for (int numObstacles : NUM_OBSTACLES) {
+            BenchmarkScene scene = new BenchmarkScene(numObstacles, SEED);
+            ConfigurationSpace configurationSpace = new BSHConfigurationSpace(scene.parent, scene.sphericalAgentDescription, scene.sphericalObstacles);
+            int numVertices = (int) (scene.side * scene.side / (VERTEX_SPACING * VERTEX_SPACING));
+            List<Vec3> vertexPositions = new UniformSampler(scene.parent, scene.minCorner, scene.maxCorner).sample(numVertices);
+
+            Harness.measure("generateVertices", numObstacles, () -> () ->
+                    Harness.consume(createGraph(scene, vertexPositions, configurationSpace)));
+            Harness.measure("generateAdjacencies", numObstacles, () -> {
+                MultiAgentGraph graph = createGraph(scene, vertexPositions, configurationSpace);
+                return () -> graph.generateAdjacencies(MAX_EDGE_LEN, configurationSpace);
+            });
+            Harness.measure("generatePRMStarAdjacencies", numObstacles, () -> {
+                MultiAgentGraph graph = createGraph(scene, vertexPositions, configurationSpace);
+                return () -> graph.generatePRMStarAdjacencies(configurationSpace);
+            });
+
+            MultiAgentGraph graph = createGraph(scene, vertexPositions, configurationSpace);
+            graph.generateAdjacencies(MAX_EDGE_LEN, configurationSpace);
+            Harness.measure("bfs", numObstacles, () -> () -> Harness.consume(graph.bfs()));
+            Harness.measure("dfs", numObstacles, () -> () -> Harness.consume(graph.dfs()));
+            Harness.measure("ucs", numObstacles, () -> () -> Harness.consume(graph.ucs()));
+            Harness.measure("aStar", numObstacles, () -> () -> Harness.consume(graph.aStar()));
+            Harness.measure("weightedAStar 1.5", numObstacles, () -> () -> Harness.consume(graph.weightedAStar(1.5f)));
+        }
+        MultiAgentGraph.CACHE_PATHS = previousCachePaths;
+    }
+
+    public static void main(String[] args) {
+        run();
+        Harness.printResults();
+    }
+}
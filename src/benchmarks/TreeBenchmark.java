@@ -0,0 +1,56 @@
+package benchmarks;
+
+import math.Vec3;
+import robot.planning.optimalrrt.OptimalRapidlyExploringRandomTree;
+import robot.planning.rrt.BidirectionalRapidlyExploringRandomTree;
+import robot.planning.rrt.RapidlyExploringRandomTree;
+import robot.planning.sampling.UniformSampler;
+import robot.sensing.BSHConfigurationSpace;
+import robot.sensing.ConfigurationSpace;
+
+import java.util.List;
+
+public class TreeBenchmark {
+    public static int[] NUM_OBSTACLES = {1000, 10000, 40000};
+    public static int NUM_GROWTH_SAMPLES = 2000;
+    public static long SEED = 5611;
+
+    public static void run() {
+        for (int numObstacles : NUM_OBSTACLES) {
+            BenchmarkScene scene = new BenchmarkScene(numObstacles, SEED);
+            ConfigurationSpace configurationSpace = new BSHConfigurationSpace(scene.parent, scene.sphericalAgentDescription, scene.sphericalObstacles);
+            List<Vec3> samples = new UniformSampler(scene.parent, scene.minCorner, scene.maxCorner).sample(NUM_GROWTH_SAMPLES);
+
+            // Growth also draws from the applet (goal bias), so it is reseeded for every tree
+            Harness.measure("RRT growTree", numObstacles, () -> {
+                scene.parent.randomSeed(SEED);
+                RapidlyExploringRandomTree tree = new RapidlyExploringRandomTree(scene.parent, scene.startPosition, scene.finishPosition);
+                return () -> {
+                    tree.growTree(samples, configurationSpace);
+                    Harness.consume(tree.search());
+                };
+            });
+            Harness.measure("BiRRT growTree", numObstacles, () -> {
+                scene.parent.randomSeed(SEED);
+                BidirectionalRapidlyExploringRandomTree tree = new BidirectionalRapidlyExploringRandomTree(scene.parent, scene.startPosition, scene.finishPosition);
+                return () -> {
+                    tree.growTree(samples, configurationSpace);
+                    Harness.consume(tree.search());
+                };
+            });
+            Harness.measure("RRT* growTree", numObstacles, () -> {
+                scene.parent.randomSeed(SEED);
+                OptimalRapidlyExploringRandomTree tree = new OptimalRapidlyExploringRandomTree(scene.parent, scene.startPosition, scene.finishPosition, scene.minCorner, scene.maxCorner);
+                return () -> {
+                    tree.growTree(samples, configurationSpace);
+                    Harness.consume(tree.search());
+                };
+            });
+        }
+    }
+
+    public static void main(String[] args) {
+        run();
+        Harness.printResults();
+    }
+}
@@ -3,10 +3,19 @@ package demos;
 import camera.QueasyCam;
 import fixed.SphericalObstacle;
 import math.Vec3;
+import metrics.Metrics;
 import processing.core.PApplet;
 import robot.acting.SphericalAgent;
+import robot.input.SceneListener;
+import robot.input.SceneReader;
 import robot.input.SphericalAgentDescription;
 import robot.planning.multiagentgraph.MultiAgentGraph;
+import robot.planning.sampling.BridgeTestSampler;
+import robot.planning.sampling.GaussianSampler;
+import robot.planning.sampling.HaltonSampler;
+import robot.planning.sampling.Sampler;
+import robot.planning.sampling.SobolSampler;
+import robot.planning.sampling.UniformSampler;
 import robot.sensing.BSHConfigurationSpace;
 import robot.sensing.ConfigurationSpace;
 import robot.sensing.PlainConfigurationSpace;
@@ -37,6 +46,13 @@ public class BSHSpeedUp extends PApplet {
     static String DATA_STRUCTURE = "";
     static long DATA_STRUCTURE_CREATION_TIME = 0;
     static long EDGE_CULLING_TIME = 0;
+    static boolean USE_LANDMARKS = false;
+    static int NUM_LANDMARKS = 8;
+    // One of Uniform, Halton, Sobol, Gaussian, BridgeTest
+    static String SAMPLER = "Uniform";
+    static int NUM_VERTEX_SAMPLES = 7000;
+    // Text or binary scene file whose obstacles replace the generated grid, see SceneReader
+    static String SCENE_FILE = null;
 
     public void settings() {
         size(WIDTH, HEIGHT, P3D);
@@ -49,24 +65,42 @@ public class BSHSpeedUp extends PApplet {
         noStroke();
 
         cam = new QueasyCam(this);
-        for (int i = -SIDE; i < SIDE; i = i + 4) {
-            for (int j = -SIDE; j < SIDE; j = j + 4) {
-                if (Math.abs(i * i * i + j) < 10) {
-                    continue;
+        boolean isSceneRead = false;
+        if (SCENE_FILE != null) {
+            // Obstacles go straight into the list the configuration spaces are built from
+            isSceneRead = SceneReader.read(this, SCENE_FILE, new SceneListener() {
+                @Override
+                public void obstacle(SphericalObstacle sphericalObstacle) {
+                    sphericalObstacles.add(sphericalObstacle);
                 }
-                Vec3 center = Vec3.of(0, j, i);
-                if (center.minus(startPosition).norm() < 10) {
-                    continue;
-                }
-                if (center.minus(finishPosition).norm() < 10) {
-                    continue;
+            });
+            if (!isSceneRead || sphericalObstacles.isEmpty()) {
+                // A failed read may have delivered some obstacles already, they are dropped
+                PApplet.println("Scene " + SCENE_FILE + " has no usable obstacles, using the generated grid instead");
+                sphericalObstacles.clear();
+                isSceneRead = false;
+            }
+        }
+        if (!isSceneRead) {
+            for (int i = -SIDE; i < SIDE; i = i + 4) {
+                for (int j = -SIDE; j < SIDE; j = j + 4) {
+                    if (Math.abs(i * i * i + j) < 10) {
+                        continue;
+                    }
+                    Vec3 center = Vec3.of(0, j, i);
+                    if (center.minus(startPosition).norm() < 10) {
+                        continue;
+                    }
+                    if (center.minus(finishPosition).norm() < 10) {
+                        continue;
+                    }
+                    sphericalObstacles.add(new SphericalObstacle(
+                            this,
+                            center,
+                            1f,
+                            Vec3.of(1, 0, 1)
+                    ));
                 }
-                sphericalObstacles.add(new SphericalObstacle(
-                        this,
-                        center,
-                        1f,
-                        Vec3.of(1, 0, 1)
-                ));
             }
         }
         DRAW_OBSTACLES = false;
@@ -91,10 +125,26 @@ public class BSHSpeedUp extends PApplet {
         sphericalAgent = new SphericalAgent(this, sphericalAgentDescription, bshConfigurationSpace, minCorner, maxCorner, 20f, Vec3.of(1));
 
         // vertex sampling
-        graph.generateVertices(sphericalAgent.samplePoints(7000), bshConfigurationSpace);
+        sphericalAgent.setSampler(createSampler());
+        graph.generateVertices(sphericalAgent.samplePoints(NUM_VERTEX_SAMPLES), bshConfigurationSpace);
         resetBSH();
     }
 
+    private Sampler createSampler() {
+        switch (SAMPLER) {
+            case "Halton":
+                return new HaltonSampler(minCorner, maxCorner);
+            case "Sobol":
+                return new SobolSampler(minCorner, maxCorner);
+            case "Gaussian":
+                return new GaussianSampler(this, minCorner, maxCorner, bshConfigurationSpace, 2f);
+            case "BridgeTest":
+                return new BridgeTestSampler(this, minCorner, maxCorner, bshConfigurationSpace, 3f);
+            default:
+                return new UniformSampler(this, minCorner, maxCorner);
+        }
+    }
+
     private void resetPlain() {
         DATA_STRUCTURE = "Plain";
         sphericalAgent = new SphericalAgent(this, sphericalAgentDescription, plainConfigurationSpace, minCorner, maxCorner, 20f, Vec3.of(1));
@@ -103,6 +153,9 @@ public class BSHSpeedUp extends PApplet {
         graph.generateAdjacencies(30, plainConfigurationSpace);
         long edge = millis();
         EDGE_CULLING_TIME = edge - configSpace;
+        if (USE_LANDMARKS) {
+            graph.generateLandmarks(NUM_LANDMARKS);
+        }
     }
 
     private void resetBSH() {
@@ -113,6 +166,9 @@ public class BSHSpeedUp extends PApplet {
         graph.generateAdjacencies(30, bshConfigurationSpace);
         long edge = millis();
         EDGE_CULLING_TIME = edge - configSpace;
+        if (USE_LANDMARKS) {
+            graph.generateLandmarks(NUM_LANDMARKS);
+        }
     }
 
     public void draw() {
@@ -148,6 +204,8 @@ public class BSHSpeedUp extends PApplet {
                 "FPS: " + Math.round(frameRate)
                         + " " + DATA_STRUCTURE + " edge culling time: " + EDGE_CULLING_TIME + "ms"
                         + " #obs: " + sphericalObstacles.size()
+                        + " sampler: " + SAMPLER
+                        + " #landmarks: " + (USE_LANDMARKS ? NUM_LANDMARKS : 0)
         );
     }
 
@@ -160,6 +218,14 @@ public class BSHSpeedUp extends PApplet {
             resetPlain();
             sphericalAgent.setPath(graph.weightedAStar(1.5f));
         }
+        if (key == 'l') {
+            USE_LANDMARKS = !USE_LANDMARKS;
+            if (USE_LANDMARKS) {
+                graph.generateLandmarks(NUM_LANDMARKS);
+            } else {
+                graph.clearLandmarks();
+            }
+        }
         if (key == 'g') {
             BSHConfigurationSpace.DRAW_BOUNDING_SPHERES = !BSHConfigurationSpace.DRAW_BOUNDING_SPHERES;
         }
@@ -175,6 +241,16 @@ public class BSHSpeedUp extends PApplet {
         if (key == 'p') {
             sphericalAgent.isPaused = !sphericalAgent.isPaused;
         }
+        if (key == 'm') {
+            // Collect metrics from now on, or stop and dump what was collected
+            Metrics.ENABLED = !Metrics.ENABLED;
+            if (Metrics.ENABLED) {
+                Metrics.reset();
+            } else {
+                PApplet.println(Metrics.toCsv());
+                Metrics.save("metrics.json");
+            }
+        }
         if (key == '1') {
             sphericalAgent.setPath(graph.dfs());
         }
@@ -5,6 +5,7 @@ import fixed.SphericalObstacle;
 import math.Vec3;
 import processing.core.PApplet;
 import robot.acting.FreeAgent;
+import robot.acting.FreeAgentSystem;
 import robot.acting.MultiSphericalAgentSystem;
 
 import java.util.ArrayList;
@@ -15,11 +16,12 @@ public class Aquarium extends PApplet {
     public static final int HEIGHT = 800;
     public static final int SIDE = 100;
     public static boolean PAUSE = true ;
+    public static int NUM_AGENTS_PER_SCHOOL = 25;
     final Vec3 minCorner = Vec3.of(-SIDE, -SIDE, -SIDE);
     final Vec3 maxCorner = Vec3.of(SIDE, SIDE, SIDE);
 
     List<SphericalObstacle> sphericalObstacles = new ArrayList<>();
-    List<FreeAgent> freeAgents = new ArrayList<>() ;
+    FreeAgentSystem freeAgentSystem = new FreeAgentSystem();
     QueasyCam cam;
 
     static boolean DRAW_OBSTACLES = true;
@@ -41,8 +43,8 @@ public class Aquarium extends PApplet {
         Vec3 center = Vec3.of(SIDE*0.0f, SIDE * 0.0f, SIDE * 0.0f);
 
         float agentRadius = SIDE * 0.020f;
-        for(int i = 0 ; i < 25; i++){
-            freeAgents.add(new FreeAgent(
+        for(int i = 0 ; i < NUM_AGENTS_PER_SCHOOL; i++){
+            freeAgentSystem.add(new FreeAgent(
                     Vec3.of(random(-SIDE, -SIDE*0.75f), random(-SIDE, -SIDE*0.75f), random(-SIDE, -SIDE*0.75f)),
                     Vec3.of(random(0, 1f), random(0, 1f), random(0, 1f)),
                     Vec3.of(random(0,1),random(0,1),random(0,1)),
@@ -52,8 +54,8 @@ public class Aquarium extends PApplet {
                     maxCorner
             ));
         }
-        for(int i = 0 ; i < 25; i++){
-            freeAgents.add(new FreeAgent(
+        for(int i = 0 ; i < NUM_AGENTS_PER_SCHOOL; i++){
+            freeAgentSystem.add(new FreeAgent(
                     Vec3.of(random(SIDE*0.75f, SIDE), random(SIDE*0.75f, SIDE), random(SIDE*0.75f, SIDE)),
                     Vec3.of(random(-1, 0f), random(-1, 0f), random(-1, 0f)),
                     Vec3.of(random(0,1),random(0,1),random(0,1)),
@@ -84,12 +86,7 @@ public class Aquarium extends PApplet {
         popMatrix();
         // update
         for(int i = 0 ; i < 10 ; i++){
-            for(FreeAgent agent : freeAgents){
-                agent.getForce(freeAgents, sphericalObstacles);
-            }
-            for(FreeAgent agent : freeAgents){
-                agent.update(0.1f);
-            }
+            freeAgentSystem.update(sphericalObstacles, 0.1f);
         }
 
         // multiagent system
@@ -105,19 +102,20 @@ public class Aquarium extends PApplet {
         }
 
 
-        for(FreeAgent agent : freeAgents){
-            agent.draw() ;
-        }
+        freeAgentSystem.draw();
 //        multiSphericalAgentSystem.draw(wings);
         long draw = millis();
 
-        surface.setTitle("Processing - FPS: " + Math.round(frameRate) + " Update: " + (update - start) + "ms Draw " + (draw - update) + "ms" );
+        surface.setTitle("Processing - FPS: " + Math.round(frameRate) + " Update: " + (update - start) + "ms Draw " + (draw - update) + "ms" + " packed-kernel: " + FreeAgentSystem.USE_PACKED_KERNEL);
     }
 
     public void keyPressed() {
         if(key == 'p'){
             PAUSE = !PAUSE ;
         }
+        if (key == 'v') {
+            FreeAgentSystem.USE_PACKED_KERNEL = !FreeAgentSystem.USE_PACKED_KERNEL;
+        }
 
 
     }
@@ -5,6 +5,7 @@ import fixed.Ground;
 import fixed.SphericalObstacle;
 import fixed.SpriteSphericalObstacle;
 import math.Vec3;
+import metrics.FrameProfiler;
 import processing.core.PApplet;
 import processing.core.PConstants;
 import processing.core.PShape;
@@ -247,12 +248,14 @@ public class CSCI5611 extends PApplet {
 
 
     public void draw() {
+        FrameProfiler.beginFrame();
         long start = millis();
         // update
 //        multiSphericalAgentSystem.updateBoid(sphericalObstacles, 0.3f);
         multiSphericalAgentSystem.updateClan(flocks, sphericalObstacles, 0.3f);
         long update = millis();
         // draw
+        FrameProfiler.begin("rendering");
         background(0);
         directionalLight(0.6f, 0.6f, 0.6f, 0, 1, -1);
         directionalLight(0.6f, 0.6f, 0.6f, 0, 1, 1);
@@ -270,10 +273,13 @@ public class CSCI5611 extends PApplet {
         ground.draw();
         // graph
 //        graph.draw();
+        FrameProfiler.end();
         long draw = millis();
         connectFinish(finishPositions);
 
         surface.setTitle("Processing - FPS: " + Math.round(frameRate) + " Update: " + (update - start) + "ms Draw " + (draw - update) + "ms" + " search: " + SEARCH_ALGORITHM + " smooth-path: " + SMOOTH_PATH);
+        FrameProfiler.draw(this);
+        FrameProfiler.endFrame();
     }
 
     private void generateCrowd(Vec3 center, List<Vec3> list, float crowdRadius) {
@@ -329,6 +335,12 @@ public class CSCI5611 extends PApplet {
         if (key == 'x') {
             SMOOTH_PATH = !SMOOTH_PATH;
         }
+        if (key == 'f') {
+            FrameProfiler.ENABLED = !FrameProfiler.ENABLED;
+        }
+        if (key == 't') {
+            FrameProfiler.saveChromeTrace("trace.json");
+        }
         if (key == 'h') {
             DRAW_OBSTACLES = !DRAW_OBSTACLES;
         }
@@ -6,6 +6,7 @@ import math.Vec3;
 import processing.core.PApplet;
 import robot.acting.SphericalAgent;
 import robot.input.SphericalAgentDescription;
+import robot.planning.rrt.BidirectionalRapidlyExploringRandomTree;
 import robot.planning.rrt.RapidlyExploringRandomTree;
 import robot.sensing.PlainConfigurationSpace;
 
@@ -26,11 +27,13 @@ public class RRT2 extends PApplet {
     List<SphericalObstacle> sphericalObstacles = new ArrayList<>();
     PlainConfigurationSpace configurationSpace;
     RapidlyExploringRandomTree rrt;
+    BidirectionalRapidlyExploringRandomTree rrtConnect;
 
     QueasyCam cam;
 
     static boolean DRAW_OBSTACLES = true;
     static boolean SMOOTH_PATH = false;
+    static boolean RRT_CONNECT = false;
 
     public void settings() {
         size(WIDTH, HEIGHT, P3D);
@@ -84,12 +87,18 @@ public class RRT2 extends PApplet {
         sphericalAgent = new SphericalAgent(this, sphericalAgentDescription, configurationSpace, minCorner, maxCorner, 20f, Vec3.of(1));
         rrt = new RapidlyExploringRandomTree(this, startPosition, finishPosition);
         rrt.growTree(sphericalAgent.samplePoints(100), configurationSpace);
+        rrtConnect = new BidirectionalRapidlyExploringRandomTree(this, startPosition, finishPosition);
+        rrtConnect.growTree(sphericalAgent.samplePoints(100), configurationSpace);
     }
 
     public void draw() {
         if (keyPressed) {
             if (key == 'n') {
-                rrt.growTree(sphericalAgent.samplePoints(10), configurationSpace);
+                if (RRT_CONNECT) {
+                    rrtConnect.growTree(sphericalAgent.samplePoints(10), configurationSpace);
+                } else {
+                    rrt.growTree(sphericalAgent.samplePoints(10), configurationSpace);
+                }
             }
         }
         long start = millis();
@@ -111,12 +120,16 @@ public class RRT2 extends PApplet {
         // configuration space
         configurationSpace.draw();
         // rrt
-        rrt.draw();
+        if (RRT_CONNECT) {
+            rrtConnect.draw();
+        } else {
+            rrt.draw();
+        }
         // agent
         sphericalAgent.draw();
         long draw = millis();
 
-        surface.setTitle("Processing - FPS: " + Math.round(frameRate) + " Update: " + (update - start) + "ms Draw " + (draw - update) + "ms" + " smooth-path: " + SMOOTH_PATH);
+        surface.setTitle("Processing - FPS: " + Math.round(frameRate) + " Update: " + (update - start) + "ms Draw " + (draw - update) + "ms" + " smooth-path: " + SMOOTH_PATH + " rrt-connect: " + RRT_CONNECT);
     }
 
     public void keyPressed() {
@@ -124,7 +137,14 @@ public class RRT2 extends PApplet {
             DRAW_OBSTACLES = !DRAW_OBSTACLES;
         }
         if (key == '1') {
-            sphericalAgent.setPath(rrt.search());
+            if (RRT_CONNECT) {
+                sphericalAgent.setPath(rrtConnect.search());
+            } else {
+                sphericalAgent.setPath(rrt.search());
+            }
+        }
+        if (key == 'c') {
+            RRT_CONNECT = !RRT_CONNECT;
         }
         if (key == 'p') {
             sphericalAgent.isPaused = !sphericalAgent.isPaused;
@@ -140,6 +160,7 @@ public class RRT2 extends PApplet {
         }
         if (key == 'j') {
             RapidlyExploringRandomTree.DRAW_TREE = !RapidlyExploringRandomTree.DRAW_TREE;
+            BidirectionalRapidlyExploringRandomTree.DRAW_TREE = !BidirectionalRapidlyExploringRandomTree.DRAW_TREE;
         }
     }
 
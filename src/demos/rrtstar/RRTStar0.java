@@ -56,7 +56,7 @@ public class RRTStar0 extends PApplet {
         );
         configurationSpace = new PlainConfigurationSpace(this, sphericalAgentDescription, sphericalObstacles);
         sphericalAgent = new SphericalAgent(this, sphericalAgentDescription, configurationSpace, minCorner, maxCorner, 20f, Vec3.of(1));
-        rrt = new OptimalRapidlyExploringRandomTree(this, startPosition, finishPosition);
+        rrt = new OptimalRapidlyExploringRandomTree(this, startPosition, finishPosition, minCorner, maxCorner);
         rrt.growTree(sphericalAgent.samplePoints(100), configurationSpace);
     }
 
@@ -90,7 +90,7 @@ public class RRTStar0 extends PApplet {
         sphericalAgent.draw();
         long draw = millis();
 
-        surface.setTitle("Processing - FPS: " + Math.round(frameRate) + " Update: " + (update - start) + "ms Draw " + (draw - update) + "ms" + " smooth-path: " + SMOOTH_PATH);
+        surface.setTitle("Processing - FPS: " + Math.round(frameRate) + " Update: " + (update - start) + "ms Draw " + (draw - update) + "ms" + " smooth-path: " + SMOOTH_PATH + " informed: " + OptimalRapidlyExploringRandomTree.INFORMED_SAMPLING);
     }
 
     public void keyPressed() {
@@ -115,6 +115,9 @@ public class RRTStar0 extends PApplet {
         if (key == 'j') {
             OptimalRapidlyExploringRandomTree.DRAW_TREE = !OptimalRapidlyExploringRandomTree.DRAW_TREE;
         }
+        if (key == 'i') {
+            OptimalRapidlyExploringRandomTree.INFORMED_SAMPLING = !OptimalRapidlyExploringRandomTree.INFORMED_SAMPLING;
+        }
     }
 
     static public void main(String[] passedArgs) {
@@ -107,6 +107,7 @@ public class Bottleneck extends PApplet {
     public void draw() {
         long start = millis();
         // update
+        multiSphericalAgentSystem.refineAnytimePaths();
         for (int i = 0; i < 20; i++) {
             multiSphericalAgentSystem.updateTTC(sphericalObstacles, 0.05f);
         }
@@ -172,6 +173,10 @@ public class Bottleneck extends PApplet {
             multiSphericalAgentSystem.weightedAStar(weight);
             SEARCH_ALGORITHM = weight + "A*";
         }
+        if (key == '6') {
+            multiSphericalAgentSystem.anytimeAStar();
+            SEARCH_ALGORITHM = "ARA*";
+        }
     }
 
     static public void main(String[] passedArgs) {
@@ -164,6 +164,7 @@ public class EightBatches extends PApplet {
     public void draw() {
         long start = millis();
         // update
+        multiSphericalAgentSystem.refineAnytimePaths();
         for (int i = 0; i < 20; i++) {
             multiSphericalAgentSystem.updateTTC(sphericalObstacles, 0.05f);
         }
@@ -229,6 +230,18 @@ public class EightBatches extends PApplet {
             multiSphericalAgentSystem.weightedAStar(weight);
             SEARCH_ALGORITHM = weight + "A*";
         }
+        if (key == '6') {
+            multiSphericalAgentSystem.anytimeAStar();
+            SEARCH_ALGORITHM = "ARA*";
+        }
+        if (key == '7') {
+            multiSphericalAgentSystem.flowField();
+            SEARCH_ALGORITHM = "flow field";
+        }
+        if (key == '9') {
+            multiSphericalAgentSystem.hierarchicalAStar();
+            SEARCH_ALGORITHM = "HPA*";
+        }
     }
 
     static public void main(String[] passedArgs) {
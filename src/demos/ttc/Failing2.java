@@ -28,6 +28,8 @@ public class Failing2 extends PApplet {
 
     static boolean DRAW_OBSTACLES = true;
     static String SEARCH_ALGORITHM = "";
+    static boolean ADAPTIVE_TTC = false;
+    static int NUM_TTC_STEPS = 0;
 
     public void settings() {
         size(WIDTH, HEIGHT, P3D);
@@ -112,8 +114,13 @@ public class Failing2 extends PApplet {
     public void draw() {
         long start = millis();
         // update
-        for (int i = 0; i < 20; i++) {
-            multiSphericalAgentSystem.updateTTC(sphericalObstacles, 0.05f);
+        if (ADAPTIVE_TTC) {
+            NUM_TTC_STEPS = multiSphericalAgentSystem.updateTTCAdaptive(sphericalObstacles, 20 * 0.05f);
+        } else {
+            for (int i = 0; i < 20; i++) {
+                multiSphericalAgentSystem.updateTTC(sphericalObstacles, 0.05f);
+            }
+            NUM_TTC_STEPS = 20;
         }
         long update = millis();
         // draw
@@ -128,7 +135,7 @@ public class Failing2 extends PApplet {
         multiSphericalAgentSystem.drawBox();
         long draw = millis();
 
-        surface.setTitle("Processing - FPS: " + Math.round(frameRate) + " Update: " + (update - start) + "ms Draw " + (draw - update) + "ms" + " search: " + SEARCH_ALGORITHM + " speed " + MultiSphericalAgentSystem.INITIAL_AGENT_SPEED);
+        surface.setTitle("Processing - FPS: " + Math.round(frameRate) + " Update: " + (update - start) + "ms Draw " + (draw - update) + "ms" + " search: " + SEARCH_ALGORITHM + " speed " + MultiSphericalAgentSystem.INITIAL_AGENT_SPEED + " adaptive-ttc: " + ADAPTIVE_TTC + " #steps " + NUM_TTC_STEPS);
     }
 
     public void keyPressed() {
@@ -156,6 +163,9 @@ public class Failing2 extends PApplet {
         if (key == 'v') {
             SphericalAgent.DRAW_PATH = !SphericalAgent.DRAW_PATH;
         }
+        if (key == 't') {
+            ADAPTIVE_TTC = !ADAPTIVE_TTC;
+        }
         if (key == '1') {
             multiSphericalAgentSystem.dfs();
             SEARCH_ALGORITHM = "DFS";
@@ -177,6 +187,10 @@ public class Failing2 extends PApplet {
             multiSphericalAgentSystem.weightedAStar(weight);
             SEARCH_ALGORITHM = weight + "A*";
         }
+        if (key == '8') {
+            multiSphericalAgentSystem.prioritizedPlanning();
+            SEARCH_ALGORITHM = "prioritized";
+        }
     }
 
     static public void main(String[] passedArgs) {
@@ -28,6 +28,8 @@ public class Failing3 extends PApplet {
 
     static boolean DRAW_OBSTACLES = true;
     static String SEARCH_ALGORITHM = "";
+    static boolean ADAPTIVE_TTC = false;
+    static int NUM_TTC_STEPS = 0;
 
     public void settings() {
         size(WIDTH, HEIGHT, P3D);
@@ -82,8 +84,13 @@ public class Failing3 extends PApplet {
     public void draw() {
         long start = millis();
         // update
-        for (int i = 0; i < 20; i++) {
-            multiSphericalAgentSystem.updateTTC(sphericalObstacles, 0.05f);
+        if (ADAPTIVE_TTC) {
+            NUM_TTC_STEPS = multiSphericalAgentSystem.updateTTCAdaptive(sphericalObstacles, 20 * 0.05f);
+        } else {
+            for (int i = 0; i < 20; i++) {
+                multiSphericalAgentSystem.updateTTC(sphericalObstacles, 0.05f);
+            }
+            NUM_TTC_STEPS = 20;
         }
         long update = millis();
         // draw
@@ -98,7 +105,7 @@ public class Failing3 extends PApplet {
         multiSphericalAgentSystem.draw();
         long draw = millis();
 
-        surface.setTitle("Processing - FPS: " + Math.round(frameRate) + " Update: " + (update - start) + "ms Draw " + (draw - update) + "ms" + " search: " + SEARCH_ALGORITHM + " speed " + MultiSphericalAgentSystem.INITIAL_AGENT_SPEED);
+        surface.setTitle("Processing - FPS: " + Math.round(frameRate) + " Update: " + (update - start) + "ms Draw " + (draw - update) + "ms" + " search: " + SEARCH_ALGORITHM + " speed " + MultiSphericalAgentSystem.INITIAL_AGENT_SPEED + " adaptive-ttc: " + ADAPTIVE_TTC + " #steps " + NUM_TTC_STEPS);
     }
 
     public void keyPressed() {
@@ -126,6 +133,9 @@ public class Failing3 extends PApplet {
         if (key == 'v') {
             SphericalAgent.DRAW_PATH = !SphericalAgent.DRAW_PATH;
         }
+        if (key == 't') {
+            ADAPTIVE_TTC = !ADAPTIVE_TTC;
+        }
         if (key == '1') {
             multiSphericalAgentSystem.dfs();
             SEARCH_ALGORITHM = "DFS";
@@ -147,6 +157,10 @@ public class Failing3 extends PApplet {
             multiSphericalAgentSystem.weightedAStar(weight);
             SEARCH_ALGORITHM = weight + "A*";
         }
+        if (key == '8') {
+            multiSphericalAgentSystem.prioritizedPlanning();
+            SEARCH_ALGORITHM = "prioritized";
+        }
     }
 
     static public void main(String[] passedArgs) {
@@ -115,6 +115,7 @@ public class FourBatches extends PApplet {
     public void draw() {
         long start = millis();
         // update
+        multiSphericalAgentSystem.refineAnytimePaths();
         for (int i = 0; i < 20; i++) {
             multiSphericalAgentSystem.updateTTC(sphericalObstacles, 0.05f);
         }
@@ -190,6 +191,24 @@ public class FourBatches extends PApplet {
             SEARCH_ALGORITHM = weight + "A*";
             searchEnd = millis();
         }
+        if (key == '6') {
+            searchStart = millis();
+            multiSphericalAgentSystem.anytimeAStar();
+            SEARCH_ALGORITHM = "ARA*";
+            searchEnd = millis();
+        }
+        if (key == '7') {
+            searchStart = millis();
+            multiSphericalAgentSystem.flowField();
+            SEARCH_ALGORITHM = "flow field";
+            searchEnd = millis();
+        }
+        if (key == '9') {
+            searchStart = millis();
+            multiSphericalAgentSystem.hierarchicalAStar();
+            SEARCH_ALGORITHM = "HPA*";
+            searchEnd = millis();
+        }
     }
 
     static public void main(String[] passedArgs) {
@@ -190,6 +190,13 @@ public class Interactive extends PApplet {
         if (keyCode == LEFT) {
             multiSphericalAgentSystem.stepBackward();
         }
+        if (key == 'n') {
+            // New agent near a random start going to the other batch's finish, connected without a rebuild
+            int batch = (int) random(NUM_BATCHES);
+            Vec3 start = startPoints.get(batch).plus(Vec3.of(0, random(-8, 8), random(-8, 8)));
+            Vec3 finish = finishPoints.get((batch + 1) % NUM_BATCHES);
+            multiSphericalAgentSystem.addAgent(new SphericalAgentDescription(start, finish, 1f), Vec3.of(random(1), random(1), random(1)));
+        }
         if (key == 'h') {
             DRAW_OBSTACLES = !DRAW_OBSTACLES;
         }
@@ -3,6 +3,7 @@ package demos.ttc;
 import camera.QueasyCam;
 import fixed.SphericalObstacle;
 import math.Vec3;
+import metrics.FrameProfiler;
 import processing.core.PApplet;
 import robot.acting.MultiSphericalAgentSystem;
 import robot.acting.SphericalAgent;
@@ -80,6 +81,7 @@ public class TwoBatches extends PApplet {
     }
 
     public void draw() {
+        FrameProfiler.beginFrame();
         long start = millis();
         // update
         for (int i = 0; i < 20; i++) {
@@ -87,6 +89,7 @@ public class TwoBatches extends PApplet {
         }
         long update = millis();
         // draw
+        FrameProfiler.begin("rendering");
         background(0);
         // obstacles
         if (DRAW_OBSTACLES) {
@@ -96,9 +99,12 @@ public class TwoBatches extends PApplet {
         }
         // multiagent system
         multiSphericalAgentSystem.draw();
+        FrameProfiler.end();
         long draw = millis();
 
         surface.setTitle("Processing - FPS: " + Math.round(frameRate) + " Update: " + (update - start) + "ms Draw " + (draw - update) + "ms" + " search: " + SEARCH_ALGORITHM + " speed " + MultiSphericalAgentSystem.INITIAL_AGENT_SPEED);
+        FrameProfiler.draw(this);
+        FrameProfiler.endFrame();
     }
 
     public void keyPressed() {
@@ -108,6 +114,12 @@ public class TwoBatches extends PApplet {
         if (keyCode == LEFT) {
             multiSphericalAgentSystem.stepBackward();
         }
+        if (key == 'f') {
+            FrameProfiler.ENABLED = !FrameProfiler.ENABLED;
+        }
+        if (key == 't') {
+            FrameProfiler.saveChromeTrace("trace.json");
+        }
         if (key == 'h') {
             DRAW_OBSTACLES = !DRAW_OBSTACLES;
         }
@@ -147,6 +159,14 @@ public class TwoBatches extends PApplet {
             multiSphericalAgentSystem.weightedAStar(weight);
             SEARCH_ALGORITHM = weight + "A*";
         }
+        if (key == '7') {
+            multiSphericalAgentSystem.flowField();
+            SEARCH_ALGORITHM = "flow field";
+        }
+        if (key == '9') {
+            multiSphericalAgentSystem.hierarchicalAStar();
+            SEARCH_ALGORITHM = "HPA*";
+        }
     }
 
     static public void main(String[] passedArgs) {
@@ -148,6 +148,10 @@ public class Unreachable extends PApplet {
             replanningSphericalAgent.algorithm = ReplanningSphericalAgent.Algorithm.WeightedAStar;
             ALGORITHM = "weighted A*";
         }
+        if (key == '6') {
+            replanningSphericalAgent.algorithm = ReplanningSphericalAgent.Algorithm.DStarLite;
+            ALGORITHM = "D* lite";
+        }
     }
 
     static public void main(String[] passedArgs) {
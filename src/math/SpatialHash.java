@@ -0,0 +1,127 @@
+package math;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+public class SpatialHash<T> {
+    private static final int CELL_INDEX_BITS = 21;
+    private static final long CELL_INDEX_MASK = (1L << CELL_INDEX_BITS) - 1;
+
+    final float cellSize;
+    final Map<Long, List<T>> cells = new HashMap<>();
+    int size = 0;
+
+    public SpatialHash(float cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size should be positive");
+        }
+        this.cellSize = cellSize;
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        cells.clear();
+        size = 0;
+    }
+
+    public void add(Vec3 position, T item) {
+        long key = key(cellOf(position.x), cellOf(position.y), cellOf(position.z));
+        cells.computeIfAbsent(key, k -> new ArrayList<>()).add(item);
+        size++;
+    }
+
+    public boolean remove(Vec3 position, T item) {
+        long key = key(cellOf(position.x), cellOf(position.y), cellOf(position.z));
+        List<T> cell = cells.get(key);
+        if (cell == null || !cell.remove(item)) {
+            return false;
+        }
+        if (cell.isEmpty()) {
+            cells.remove(key);
+        }
+        size--;
+        return true;
+    }
+
+    public List<T> getCandidates(Vec3 position, float radius) {
+        // All items in cells overlapping the axis aligned box [position - radius, position + radius]
+        // Distance checks are left to the caller
+        return getCandidates(position.x - radius, position.y - radius, position.z - radius,
+                position.x + radius, position.y + radius, position.z + radius);
+    }
+
+    public List<T> getCandidates(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        // All items in cells overlapping the axis aligned box [min, max]
+        return getCandidatesInCells(cellOf(minX), cellOf(minY), cellOf(minZ), cellOf(maxX), cellOf(maxY), cellOf(maxZ));
+    }
+
+    public double getNumCells(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        // # cells a box query walks, as double since it can overflow int
+        return ((double) cellOf(maxX) - cellOf(minX) + 1)
+                * ((double) cellOf(maxY) - cellOf(minY) + 1)
+                * ((double) cellOf(maxZ) - cellOf(minZ) + 1);
+    }
+
+    private List<T> getCandidatesInCells(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        List<T> candidates = new ArrayList<>();
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    List<T> cell = cells.get(key(x, y, z));
+                    if (cell != null) {
+                        candidates.addAll(cell);
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    public List<T> getNeighbourCandidates(Vec3 position) {
+        // Cell size is the interaction radius => only the adjacent 3 x 3 x 3 cells need to be looked at
+        return getCandidates(position, cellSize);
+    }
+
+    public List<T> getNearest(Vec3 position, int k, Function<T, Vec3> positionOf) {
+        // k items nearest to position sorted by distance, the search box grows until it holds k items within its radius
+        // Every item within the radius is inside the box, so the k nearest of those are the k nearest overall
+        Comparator<T> byDistance = Comparator.comparingDouble(item -> positionOf.apply(item).minus(position).norm());
+        float radius = cellSize;
+        while (true) {
+            List<T> candidates = getCandidates(position, radius);
+            List<T> withinRadius = new ArrayList<>();
+            for (T candidate : candidates) {
+                if (positionOf.apply(candidate).minus(position).norm() <= radius) {
+                    withinRadius.add(candidate);
+                }
+            }
+            if (withinRadius.size() >= k || candidates.size() == size) {
+                List<T> nearest = withinRadius.size() >= k ? withinRadius : candidates;
+                nearest.sort(byDistance);
+                return nearest.subList(0, Math.min(k, nearest.size()));
+            }
+            radius *= 2;
+        }
+    }
+
+    private int cellOf(float coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private static long key(int x, int y, int z) {
+        return ((x & CELL_INDEX_MASK) << (2 * CELL_INDEX_BITS))
+                | ((y & CELL_INDEX_MASK) << CELL_INDEX_BITS)
+                | (z & CELL_INDEX_MASK);
+    }
+}
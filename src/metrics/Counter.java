@@ -0,0 +1,33 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class Counter {
+    public final String name;
+    // Agents are updated in parallel, so increments must not contend on one cache line
+    final LongAdder value = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public void increment() {
+        if (Metrics.ENABLED) {
+            value.increment();
+        }
+    }
+
+    public void add(long n) {
+        if (Metrics.ENABLED) {
+            value.add(n);
+        }
+    }
+
+    public long get() {
+        return value.sum();
+    }
+
+    void reset() {
+        value.reset();
+    }
+}
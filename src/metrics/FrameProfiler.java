@@ -0,0 +1,254 @@
+package metrics;
+
+import processing.core.PApplet;
+import processing.core.PConstants;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+public class FrameProfiler {
+    // Nested phase timings of the last NUM_FRAMES frames, phases may only be opened by the thread that began the frame
+    // Usage: beginFrame() at the top of draw(), begin(name) / end() around phases, endFrame() at the bottom
+    public static boolean ENABLED = false;
+    public static boolean DRAW_OVERLAY = true;
+    public static int NUM_FRAMES = 600;
+    public static int MAX_PHASES_PER_FRAME = 256;
+    public static int MAX_DEPTH = 16;
+    public static float FRAME_BUDGET_MILLIS = 1000f / 60;
+    public static float OVERLAY_MILLIS_PER_PIXEL = 0.25f;
+
+    // Ring buffer, frame number f is in slot f % numFrames, nothing is allocated per frame
+    private static int numFrames = 0;
+    private static int maxPhases = 0;
+    private static long[] frameStarts;
+    private static long[] frameEnds;
+    private static int[] numPhases;
+    private static String[][] phaseNames;
+    private static long[][] phaseStarts;
+    private static long[][] phaseEnds;
+    private static int[][] phaseDepths;
+    private static int[] openPhases;
+    private static int depth = 0;
+    private static long numFramesRecorded = 0;
+    private static int numPhasesDropped = 0;
+    private static int slot = 0;
+    private static boolean isInFrame = false;
+    private static Thread frameThread = null;
+
+    private static void allocate() {
+        numFrames = Math.max(NUM_FRAMES, 1);
+        maxPhases = Math.max(MAX_PHASES_PER_FRAME, 1);
+        frameStarts = new long[numFrames];
+        frameEnds = new long[numFrames];
+        numPhases = new int[numFrames];
+        phaseNames = new String[numFrames][maxPhases];
+        phaseStarts = new long[numFrames][maxPhases];
+        phaseEnds = new long[numFrames][maxPhases];
+        phaseDepths = new int[numFrames][maxPhases];
+        openPhases = new int[Math.max(MAX_DEPTH, 1)];
+        numFramesRecorded = 0;
+        numPhasesDropped = 0;
+    }
+
+    public static void beginFrame() {
+        if (!ENABLED) {
+            return;
+        }
+        if (numFrames != NUM_FRAMES || maxPhases != MAX_PHASES_PER_FRAME || openPhases.length != MAX_DEPTH) {
+            allocate();
+        }
+        slot = (int) (numFramesRecorded % numFrames);
+        numPhases[slot] = 0;
+        depth = 0;
+        frameThread = Thread.currentThread();
+        isInFrame = true;
+        frameStarts[slot] = System.nanoTime();
+    }
+
+    public static void endFrame() {
+        if (!isInFrame) {
+            return;
+        }
+        long now = System.nanoTime();
+        // Phases left open are closed with the frame
+        while (depth > 0) {
+            int phase = openPhases[--depth];
+            if (phase >= 0) {
+                phaseEnds[slot][phase] = now;
+            }
+        }
+        frameEnds[slot] = now;
+        numFramesRecorded++;
+        isInFrame = false;
+    }
+
+    public static void begin(String name) {
+        // Names should be literals, they are kept by reference
+        if (!isInFrame || Thread.currentThread() != frameThread) {
+            return;
+        }
+        if (depth == openPhases.length) {
+            numPhasesDropped++;
+            return;
+        }
+        int phase = numPhases[slot];
+        if (phase == maxPhases) {
+            // Still tracked as open so that the matching end() closes the right phase
+            numPhasesDropped++;
+            openPhases[depth++] = -1;
+            return;
+        }
+        numPhases[slot]++;
+        phaseNames[slot][phase] = name;
+        phaseDepths[slot][phase] = depth;
+        phaseStarts[slot][phase] = System.nanoTime();
+        phaseEnds[slot][phase] = phaseStarts[slot][phase];
+        openPhases[depth++] = phase;
+    }
+
+    public static void end() {
+        if (!isInFrame || Thread.currentThread() != frameThread || depth == 0) {
+            return;
+        }
+        int phase = openPhases[--depth];
+        if (phase >= 0) {
+            phaseEnds[slot][phase] = System.nanoTime();
+        }
+    }
+
+    private static int numCompleteFrames() {
+        // Once the ring has wrapped, the slot of a frame in progress still holds the end of the frame it replaces
+        int numSlots = isInFrame ? numFrames - 1 : numFrames;
+        return (int) Math.min(numFramesRecorded, numSlots);
+    }
+
+    private static int slotOfFramesAgo(int framesAgo) {
+        // 1 is the last complete frame
+        return (int) ((numFramesRecorded - framesAgo) % numFrames);
+    }
+
+    private static float millis(long nanos) {
+        return nanos / 1e6f;
+    }
+
+    private static void fillOf(PApplet parent, String name) {
+        // Same phase name => same color in every frame
+        int hash = name.hashCode();
+        parent.fill(0.4f + 0.6f * ((hash & 0xff) / 255f), 0.4f + 0.6f * (((hash >> 8) & 0xff) / 255f), 0.4f + 0.6f * (((hash >> 16) & 0xff) / 255f));
+    }
+
+    public static void draw(PApplet parent) {
+        // Screen space overlay: frame time bars stacked by top level phases and the phase tree of the last frame
+        if (!ENABLED || !DRAW_OVERLAY || numCompleteFrames() == 0) {
+            return;
+        }
+        int numBars = Math.min(numCompleteFrames(), parent.width / 2);
+        float maxFrameMillis = 0;
+        float totalFrameMillis = 0;
+        int numOverBudget = 0;
+        Map<String, Float> maxPhaseMillis = new HashMap<>();
+        for (int framesAgo = 1; framesAgo <= numCompleteFrames(); framesAgo++) {
+            int s = slotOfFramesAgo(framesAgo);
+            float frameMillis = millis(frameEnds[s] - frameStarts[s]);
+            maxFrameMillis = Math.max(maxFrameMillis, frameMillis);
+            totalFrameMillis += frameMillis;
+            if (frameMillis > FRAME_BUDGET_MILLIS) {
+                numOverBudget++;
+            }
+            for (int p = 0; p < numPhases[s]; p++) {
+                maxPhaseMillis.merge(phaseNames[s][p], millis(phaseEnds[s][p] - phaseStarts[s][p]), Math::max);
+            }
+        }
+
+        parent.pushStyle();
+        parent.pushMatrix();
+        parent.hint(PConstants.DISABLE_DEPTH_TEST);
+        parent.camera();
+        parent.noLights();
+        parent.colorMode(PConstants.RGB, 1.0f);
+        parent.rectMode(PConstants.CORNER);
+        parent.noStroke();
+        float bottom = parent.height - 10;
+        for (int i = 0; i < numBars; i++) {
+            int s = slotOfFramesAgo(numBars - i);
+            float x = 10 + 2 * i;
+            float frameMillis = millis(frameEnds[s] - frameStarts[s]);
+            parent.fill(frameMillis > FRAME_BUDGET_MILLIS ? 0.6f : 0.3f, 0.3f, 0.3f);
+            parent.rect(x, bottom - frameMillis / OVERLAY_MILLIS_PER_PIXEL, 2, frameMillis / OVERLAY_MILLIS_PER_PIXEL);
+            float y = bottom;
+            for (int p = 0; p < numPhases[s]; p++) {
+                if (phaseDepths[s][p] != 0) {
+                    continue;
+                }
+                float phaseHeight = millis(phaseEnds[s][p] - phaseStarts[s][p]) / OVERLAY_MILLIS_PER_PIXEL;
+                fillOf(parent, phaseNames[s][p]);
+                parent.rect(x, y - phaseHeight, 2, phaseHeight);
+                y -= phaseHeight;
+            }
+        }
+        // Frame budget line
+        parent.fill(1, 1, 0);
+        parent.rect(10, bottom - FRAME_BUDGET_MILLIS / OVERLAY_MILLIS_PER_PIXEL, 2 * numBars, 1);
+
+        int last = slotOfFramesAgo(1);
+        float y = 20;
+        parent.textSize(12);
+        parent.fill(1);
+        parent.text(String.format(Locale.ROOT, "frame %.2f ms, avg %.2f, max %.2f over %d frames, %d over %.1f ms budget",
+                millis(frameEnds[last] - frameStarts[last]), totalFrameMillis / numCompleteFrames(), maxFrameMillis,
+                numCompleteFrames(), numOverBudget, FRAME_BUDGET_MILLIS), 10, y);
+        for (int p = 0; p < numPhases[last]; p++) {
+            y += 14;
+            String name = phaseNames[last][p];
+            fillOf(parent, name);
+            parent.text(String.format(Locale.ROOT, "%" + (2 * phaseDepths[last][p] + 1) + "s%s %.2f ms (max %.2f)",
+                    "", name, millis(phaseEnds[last][p] - phaseStarts[last][p]), maxPhaseMillis.get(name)), 10, y);
+        }
+        if (numPhasesDropped > 0) {
+            y += 14;
+            parent.fill(1, 0, 0);
+            parent.text("# phases dropped: " + numPhasesDropped, 10, y);
+        }
+        parent.hint(PConstants.ENABLE_DEPTH_TEST);
+        parent.popMatrix();
+        parent.popStyle();
+    }
+
+    public static boolean saveChromeTrace(String fileName) {
+        // Chrome trace event format (chrome://tracing, Perfetto), complete events in microseconds
+        // Nesting is recovered by the viewer from the time ranges
+        int numComplete = numCompleteFrames();
+        if (numComplete == 0) {
+            PApplet.println("No frames profiled, trace not saved");
+            return false;
+        }
+        long origin = frameStarts[slotOfFramesAgo(numComplete)];
+        try (Writer writer = new FileWriter(fileName)) {
+            writer.write("{\"displayTimeUnit\": \"ms\", \"traceEvents\": [\n");
+            String separator = "";
+            for (int framesAgo = numComplete; framesAgo >= 1; framesAgo--) {
+                int s = slotOfFramesAgo(framesAgo);
+                writer.write(separator + completeEvent("frame " + (numFramesRecorded - framesAgo), frameStarts[s] - origin, frameEnds[s] - frameStarts[s]));
+                separator = ",\n";
+                for (int p = 0; p < numPhases[s]; p++) {
+                    writer.write(separator + completeEvent(phaseNames[s][p], phaseStarts[s][p] - origin, phaseEnds[s][p] - phaseStarts[s][p]));
+                }
+            }
+            writer.write("\n]}\n");
+        } catch (IOException e) {
+            PApplet.println("Could not save trace to " + fileName + ": " + e.getMessage());
+            return false;
+        }
+        PApplet.println("Trace of " + numComplete + " frames saved to " + fileName);
+        return true;
+    }
+
+    private static String completeEvent(String name, long startNanos, long durationNanos) {
+        return String.format(Locale.ROOT, "{\"name\": \"%s\", \"ph\": \"X\", \"pid\": 1, \"tid\": 1, \"ts\": %.3f, \"dur\": %.3f}",
+                name.replace("\\", "\\\\").replace("\"", "\\\""), startNanos / 1e3, durationNanos / 1e3);
+    }
+}
@@ -0,0 +1,95 @@
+package metrics;
+
+import java.util.Arrays;
+
+public class Histogram {
+    // Latencies in nanoseconds, 8 buckets per power of two => percentiles are within 12.5%
+    static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    public final String name;
+    final long[] buckets = new long[NUM_BUCKETS];
+    long count = 0;
+    long total = 0;
+    long max = 0;
+
+    Histogram(String name) {
+        this.name = name;
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int octave = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (octave - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (octave - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int octave = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1L) << (octave - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public long start() {
+        // 0 marks a phase that started while disabled, it is not recorded
+        return Metrics.ENABLED ? System.nanoTime() : 0;
+    }
+
+    public void recordSince(long start) {
+        if (Metrics.ENABLED && start != 0) {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    public synchronized void record(long nanos) {
+        // Phases are coarse (a build, a search, a step), so a lock is cheap here
+        buckets[bucketOf(Math.max(nanos, 0))]++;
+        count++;
+        total += nanos;
+        max = Math.max(max, nanos);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getTotalMillis() {
+        return total / 1e6;
+    }
+
+    public synchronized double getMeanMillis() {
+        return count == 0 ? 0 : total / 1e6 / count;
+    }
+
+    public synchronized double getMaxMillis() {
+        return max / 1e6;
+    }
+
+    public synchronized double getPercentileMillis(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100 * count);
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= Math.max(rank, 1)) {
+                return Math.min(upperBoundOf(i), max) / 1e6;
+            }
+        }
+        return max / 1e6;
+    }
+
+    synchronized void reset() {
+        Arrays.fill(buckets, 0);
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+}
@@ -0,0 +1,118 @@
+package metrics;
+
+import processing.core.PApplet;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+public class Metrics {
+    // Off by default, a disabled counter or timer costs one static field read
+    public static boolean ENABLED = false;
+    // Per query log lines (search results, cache hits, inserts), the counters replace them while metrics are enabled
+    public static boolean LOG_QUERIES = true;
+
+    private static final Map<String, Counter> counters = new LinkedHashMap<>();
+    private static final Map<String, Histogram> histograms = new LinkedHashMap<>();
+
+    // Counters
+    public static final Counter VERTEX_COLLISION_CHECKS = counter("collision.vertex_checks");
+    public static final Counter EDGE_COLLISION_CHECKS = counter("collision.edge_checks");
+    public static final Counter NODE_EXPANSIONS = counter("search.node_expansions");
+    public static final Counter HEAP_OPERATIONS = counter("search.heap_operations");
+    public static final Counter TREE_NODES_ADDED = counter("rrt.nodes_added");
+    public static final Counter REWIRES = counter("rrt.rewires");
+    public static final Counter CONFLICTS_RESOLVED = counter("prioritized.conflicts_resolved");
+    public static final Counter PRIORITY_RESTARTS = counter("prioritized.restarts");
+    public static final Counter UNCOORDINATED_AGENTS = counter("prioritized.uncoordinated_agents");
+    // Latencies
+    public static final Histogram ROADMAP_BUILD = histogram("roadmap.build");
+    public static final Histogram SEARCH = histogram("search");
+    public static final Histogram REPLANNING = histogram("replanning.sense_and_update");
+    public static final Histogram TREE_GROWTH = histogram("rrt.growth");
+    public static final Histogram AGENTS_PLAN = histogram("agents.plan");
+    public static final Histogram AGENTS_STEP = histogram("agents.step");
+    public static final Histogram PRIORITIZED_PLANNING = histogram("prioritized.planning");
+
+    public static boolean isLoggingQueries() {
+        return LOG_QUERIES && !ENABLED;
+    }
+
+    public static synchronized Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    public static synchronized Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, Histogram::new);
+    }
+
+    public static synchronized void reset() {
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+        for (Histogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    private static String format(double millis) {
+        return String.format(Locale.ROOT, "%.3f", millis);
+    }
+
+    public static synchronized String toJson() {
+        StringBuilder json = new StringBuilder("{\n  \"counters\": {");
+        String separator = "\n";
+        for (Counter counter : counters.values()) {
+            json.append(separator).append("    \"").append(counter.name).append("\": ").append(counter.get());
+            separator = ",\n";
+        }
+        json.append("\n  },\n  \"histograms\": {");
+        separator = "\n";
+        for (Histogram histogram : histograms.values()) {
+            json.append(separator).append("    \"").append(histogram.name).append("\": {")
+                    .append("\"count\": ").append(histogram.getCount())
+                    .append(", \"total_ms\": ").append(format(histogram.getTotalMillis()))
+                    .append(", \"mean_ms\": ").append(format(histogram.getMeanMillis()))
+                    .append(", \"p50_ms\": ").append(format(histogram.getPercentileMillis(50)))
+                    .append(", \"p90_ms\": ").append(format(histogram.getPercentileMillis(90)))
+                    .append(", \"p99_ms\": ").append(format(histogram.getPercentileMillis(99)))
+                    .append(", \"max_ms\": ").append(format(histogram.getMaxMillis()))
+                    .append("}");
+            separator = ",\n";
+        }
+        return json.append("\n  }\n}\n").toString();
+    }
+
+    public static synchronized String toCsv() {
+        StringBuilder csv = new StringBuilder("metric, type, count, total ms, mean ms, p50 ms, p90 ms, p99 ms, max ms\n");
+        for (Counter counter : counters.values()) {
+            csv.append(counter.name).append(", counter, ").append(counter.get()).append(", , , , , ,\n");
+        }
+        for (Histogram histogram : histograms.values()) {
+            csv.append(histogram.name).append(", histogram, ").append(histogram.getCount())
+                    .append(", ").append(format(histogram.getTotalMillis()))
+                    .append(", ").append(format(histogram.getMeanMillis()))
+                    .append(", ").append(format(histogram.getPercentileMillis(50)))
+                    .append(", ").append(format(histogram.getPercentileMillis(90)))
+                    .append(", ").append(format(histogram.getPercentileMillis(99)))
+                    .append(", ").append(format(histogram.getMaxMillis()))
+                    .append("\n");
+        }
+        return csv.toString();
+    }
+
+    public static boolean save(String fileName) {
+        // Format is picked by extension, .csv or else json
+        try (Writer writer = new FileWriter(fileName)) {
+            writer.write(fileName.endsWith(".csv") ? toCsv() : toJson());
+        } catch (IOException e) {
+            PApplet.println("Could not save metrics to " + fileName + ": " + e.getMessage());
+            return false;
+        }
+        PApplet.println("Metrics saved to " + fileName);
+        return true;
+    }
+}
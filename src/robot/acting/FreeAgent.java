@@ -34,6 +34,10 @@ public class FreeAgent {
         this.force = Vec3.zero();
     }
 
+    public Vec3 getCenter() {
+        return center;
+    }
+
     public void update(float dt){
         this.velocity.plusInPlace(force) ;
         this.center.plusInPlace(this.velocity.scale(dt));
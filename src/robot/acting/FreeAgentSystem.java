@@ -0,0 +1,49 @@
+package robot.acting;
+
+import fixed.SphericalObstacle;
+import math.SpatialHash;
+import robot.sensing.ObstacleBroadPhase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class FreeAgentSystem {
+    public static boolean USE_PACKED_KERNEL = true;
+
+    public final List<FreeAgent> freeAgents = new ArrayList<>();
+    final PackedFlock packedFlock = new PackedFlock();
+    ObstacleBroadPhase obstacleBroadPhase;
+
+    public void add(FreeAgent freeAgent) {
+        freeAgents.add(freeAgent);
+    }
+
+    public void update(List<SphericalObstacle> obstacles, float dt) {
+        obstacleBroadPhase = ObstacleBroadPhase.of(obstacleBroadPhase, obstacles);
+        if (USE_PACKED_KERNEL) {
+            packedFlock.load(freeAgents, FreeAgent.IMPACT_RADIUS);
+            packedFlock.computeForces(obstacleBroadPhase);
+            packedFlock.storeForces(freeAgents);
+        } else {
+            // Neighbours are looked up only in adjacent cells of a per frame spatial hash
+            SpatialHash<FreeAgent> flockHash = new SpatialHash<>(FreeAgent.IMPACT_RADIUS);
+            for (FreeAgent agent : freeAgents) {
+                flockHash.add(agent.center, agent);
+            }
+            // Double buffered: all forces are computed from the current state before any agent moves
+            MultiSphericalAgentSystem.forEachAgent(freeAgents.size(), i -> {
+                FreeAgent agent = freeAgents.get(i);
+                agent.getForce(
+                        flockHash.getNeighbourCandidates(agent.center),
+                        obstacleBroadPhase.getCandidates(agent.center, FreeAgent.IMPACT_RADIUS));
+            });
+        }
+        MultiSphericalAgentSystem.forEachAgent(freeAgents.size(), i -> freeAgents.get(i).update(dt));
+    }
+
+    public void draw() {
+        for (FreeAgent agent : freeAgents) {
+            agent.draw();
+        }
+    }
+}
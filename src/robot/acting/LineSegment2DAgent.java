@@ -3,6 +3,9 @@ package robot.acting;
 import math.Vec3;
 import processing.core.PApplet;
 import robot.input.LineSegment2DAgentDescription;
+import robot.planning.sampling.FreeSpaceSampler;
+import robot.planning.sampling.Sampler;
+import robot.planning.sampling.UniformSampler;
 import robot.sensing.LineSegment2DConfigurationSpace;
 
 import java.util.ArrayList;
@@ -19,6 +22,7 @@ public class LineSegment2DAgent {
     final Vec3 color;
     final Vec3 minCorner;
     final Vec3 maxCorner;
+    Sampler sampler;
 
     Vec3 pose;
     List<Vec3> path = new ArrayList<>();
@@ -35,6 +39,7 @@ public class LineSegment2DAgent {
         this.maxCorner = maxCorner;
 
         this.pose = Vec3.of(description.startPose);
+        this.sampler = new UniformSampler(parent, minCorner, maxCorner);
     }
 
     public void update(float dt) {
@@ -166,15 +171,16 @@ public class LineSegment2DAgent {
     }
 
     public List<Vec3> samplePoints(int numberOfPoints) {
-        List<Vec3> samples = new ArrayList<>();
-        for (int i = 0; i < numberOfPoints; i++) {
-            samples.add(Vec3.of(
-                    parent.random(minCorner.x, maxCorner.x),
-                    parent.random(minCorner.y, maxCorner.y),
-                    parent.random(minCorner.z, maxCorner.z)
-            ));
-        }
-        return samples;
+        return sampler.sample(numberOfPoints);
+    }
+
+    public List<Vec3> sampleFreePoints(int numberOfPoints) {
+        // Only positions outside obstacles, drawn from the current sampler
+        return new FreeSpaceSampler(sampler, configurationSpace).sample(numberOfPoints);
+    }
+
+    public void setSampler(Sampler sampler) {
+        this.sampler = sampler;
     }
 
 }
@@ -1,20 +1,36 @@
 package robot.acting;
 
 import fixed.SphericalObstacle;
+import math.SpatialHash;
 import math.Vec3;
+import metrics.FrameProfiler;
+import metrics.Metrics;
 import processing.core.PApplet;
 import processing.core.PShape;
 import robot.input.SphericalAgentDescription;
+import robot.planning.multiagentgraph.AnytimeRepairingAStar;
 import robot.planning.multiagentgraph.MultiAgentGraph;
 import robot.sensing.ConfigurationSpace;
+import robot.sensing.ObstacleBroadPhase;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 public class MultiSphericalAgentSystem {
     public static float INITIAL_AGENT_SPEED = 20f;
     public static float MAX_EDGE_LEN = 10f;
     public static int NUM_VERTEX_SAMPLES = 10000;
+    // Sample NUM_VERTEX_SAMPLES free vertices directly instead of sampling and culling NUM_VERTEX_SAMPLES vertices
+    public static boolean FREE_SPACE_SAMPLING = false;
+    public static MultiAgentGraph.ConnectionStrategy CONNECTION_STRATEGY = MultiAgentGraph.ConnectionStrategy.RADIUS;
+    public static int NUM_NEAREST_NEIGHBOURS = 15;
+    // Roadmaps are sparsified keeping shortest paths within this factor, 0 keeps the dense roadmap
+    public static float SPARSIFY_STRETCH_FACTOR = 0;
+    // Roadmap is loaded from this file if it was built for the same scene and parameters, else built and saved to it
+    public static String ROADMAP_FILE = null;
 
     public static float TTC_K = 10;
     public static float TTC_MAX_FORCE = 500f;
@@ -23,10 +39,31 @@ public class MultiSphericalAgentSystem {
     public static float TTC_SEPARATION_FORCE_K = 40;
     public static float TTC_COLLISION_CORRECTION_FORCE_K = 10;
 
+    // Obstacles further than the distance covered in this time are ignored by ttc
+    public static float TTC_OBSTACLE_TIME_HORIZON = 10;
+
+    // Adaptive ttc integration, sub step = safety * minimum predicted time to collision clamped to [min, max]
+    // Max is well above the 0.05 fixed step of the demos so that sparse crowds take few big steps
+    public static float TTC_SUB_STEP_SAFETY = 0.5f;
+    public static float TTC_MIN_SUB_STEP = 0.005f;
+    public static float TTC_MAX_SUB_STEP = 0.5f;
+
+    public static boolean PARALLEL_LOCAL_INTERACTIONS = true;
+
+    // Per frame time shared by all agents to refine their anytime (ARA*) paths, spent by refineAnytimePaths()
+    public static long ANYTIME_REFINEMENT_BUDGET_MILLIS = 5;
+    // Distance the fastest agent covers in one time step of prioritized planning
+    public static float COORDINATION_STEP_DISTANCE = 2f;
+
     final PApplet parent;
     final ConfigurationSpace configurationSpace;
     final MultiAgentGraph multiAgentGraph;
     public List<SphericalAgent> sphericalAgents = new ArrayList<>();
+    ObstacleBroadPhase obstacleBroadPhase;
+    float minPredictedTimeToCollision = Float.POSITIVE_INFINITY;
+    final List<AnytimeRepairingAStar> anytimeSearches = new ArrayList<>();
+    int nextAnytimeSearch = 0;
+    boolean isFollowingTimedPaths = false;
 
     public MultiSphericalAgentSystem(PApplet parent, List<SphericalAgentDescription> sphericalAgentDescriptions, ConfigurationSpace configurationSpace, Vec3 minCorner, Vec3 maxCorner) {
         this.parent = parent;
@@ -45,8 +82,7 @@ public class MultiSphericalAgentSystem {
         }
         this.configurationSpace = configurationSpace;
         this.multiAgentGraph = new MultiAgentGraph(parent, sphericalAgentDescriptions);
-        this.multiAgentGraph.generateVertices(sphericalAgents.get(0).samplePoints(NUM_VERTEX_SAMPLES), configurationSpace);
-        this.multiAgentGraph.generateAdjacencies(MAX_EDGE_LEN, configurationSpace);
+        buildRoadmap(minCorner, maxCorner);
     }
 
     public MultiSphericalAgentSystem(PApplet parent, List<SphericalAgentDescription> sphericalAgentDescriptions, ConfigurationSpace configurationSpace, Vec3 minCorner, Vec3 maxCorner, int numBatches) {
@@ -72,35 +108,169 @@ public class MultiSphericalAgentSystem {
         }
         this.configurationSpace = configurationSpace;
         this.multiAgentGraph = new MultiAgentGraph(parent, sphericalAgentDescriptions);
-        this.multiAgentGraph.generateVertices(sphericalAgents.get(0).samplePoints(NUM_VERTEX_SAMPLES), configurationSpace);
-        this.multiAgentGraph.generateAdjacencies(MAX_EDGE_LEN, configurationSpace);
+        buildRoadmap(minCorner, maxCorner);
+    }
+
+    public SphericalAgent addAgent(SphericalAgentDescription description, Vec3 color) {
+        // Ends of the new agent are connected to the existing roadmap instead of rebuilding it
+        SphericalAgent first = sphericalAgents.get(0);
+        SphericalAgent agent = new SphericalAgent(parent, description, configurationSpace, first.minCorner, first.maxCorner, INITIAL_AGENT_SPEED, color);
+        sphericalAgents.add(agent);
+        int agentIndex = multiAgentGraph.addAgent(description.startPosition, description.finishPosition);
+        if (isFollowingTimedPaths) {
+            // Timed paths are coordinated on a common clock, so every agent is replanned (and restarted)
+            prioritizedPlanning();
+        } else if (!anytimeSearches.isEmpty()) {
+            // Searches are indexed like agents
+            anytimeSearches.add(startAnytimeSearch(agentIndex));
+        } else {
+            agent.setPath(multiAgentGraph.aStar(agentIndex));
+        }
+        return agent;
+    }
+
+    private void buildRoadmap(Vec3 minCorner, Vec3 maxCorner) {
+        long roadmapHash = 31 * configurationSpace.sceneHash() + Objects.hash(minCorner, maxCorner, NUM_VERTEX_SAMPLES,
+                FREE_SPACE_SAMPLING, CONNECTION_STRATEGY.name(), MAX_EDGE_LEN, NUM_NEAREST_NEIGHBOURS, SPARSIFY_STRETCH_FACTOR,
+                MultiAgentGraph.LAZY_EDGE_CHECKS, MultiAgentGraph.STORE_OCCUPIED_VERTICES);
+        if (ROADMAP_FILE != null && multiAgentGraph.loadRoadmap(ROADMAP_FILE, roadmapHash, configurationSpace)) {
+            return;
+        }
+        multiAgentGraph.generateVertices(sampleVertexPositions(), configurationSpace);
+        connectVertices();
+        if (ROADMAP_FILE != null) {
+            multiAgentGraph.saveRoadmap(ROADMAP_FILE, roadmapHash);
+        }
+    }
+
+    private void connectVertices() {
+        switch (CONNECTION_STRATEGY) {
+            case K_NEAREST:
+                multiAgentGraph.generateKNearestAdjacencies(NUM_NEAREST_NEIGHBOURS, configurationSpace);
+                break;
+            case PRM_STAR:
+                multiAgentGraph.generatePRMStarAdjacencies(configurationSpace);
+                break;
+            case K_NEAREST_PRM_STAR:
+                multiAgentGraph.generateKNearestPRMStarAdjacencies(configurationSpace);
+                break;
+            default:
+                multiAgentGraph.generateAdjacencies(MAX_EDGE_LEN, configurationSpace);
+        }
+        if (SPARSIFY_STRETCH_FACTOR >= 1) {
+            multiAgentGraph.sparsify(SPARSIFY_STRETCH_FACTOR);
+        }
+    }
+
+    private List<Vec3> sampleVertexPositions() {
+        if (FREE_SPACE_SAMPLING) {
+            return sphericalAgents.get(0).sampleFreePoints(NUM_VERTEX_SAMPLES);
+        }
+        return sphericalAgents.get(0).samplePoints(NUM_VERTEX_SAMPLES);
     }
 
     public void update(float dt) {
-        for (SphericalAgent agent : sphericalAgents) {
-            agent.update(dt);
+        long start = Metrics.AGENTS_STEP.start();
+        if (isFollowingTimedPaths) {
+            followTimedPaths(dt);
+        } else {
+            FrameProfiler.begin("path following");
+            for (SphericalAgent agent : sphericalAgents) {
+                agent.update(dt);
+            }
+            FrameProfiler.end();
         }
+        Metrics.AGENTS_STEP.recordSince(start);
     }
 
     public void smoothUpdate(float dt) {
-        for (SphericalAgent agent : sphericalAgents) {
-            agent.smoothUpdate(dt);
+        long start = Metrics.AGENTS_STEP.start();
+        if (isFollowingTimedPaths) {
+            followTimedPaths(dt);
+        } else {
+            FrameProfiler.begin("path following");
+            for (SphericalAgent agent : sphericalAgents) {
+                agent.smoothUpdate(dt);
+            }
+            FrameProfiler.end();
         }
+        Metrics.AGENTS_STEP.recordSince(start);
     }
 
     public void updateBoid(List<SphericalObstacle> obstacles, float dt) {
+        long start = Metrics.AGENTS_STEP.start();
+        // Neighbours are looked up only in adjacent cells of a per frame spatial hash
+        FrameProfiler.begin("boids");
+        SpatialHash<SphericalAgent> flockHash = buildFlockHash(sphericalAgents);
+        FrameProfiler.begin("collision");
+        obstacleBroadPhase = ObstacleBroadPhase.of(obstacleBroadPhase, obstacles);
+        FrameProfiler.end();
+        // Double buffered: every agent plans from the current state of all agents, then all commit together
+        // Therefore the result does not depend on the order in which agents are updated or on the number of threads
+        forEachAgent(sphericalAgents.size(), i -> {
+            SphericalAgent agent = sphericalAgents.get(i);
+            agent.planBoidUpdate(
+                    flockHash.getNeighbourCandidates(agent.center),
+                    obstacleBroadPhase.getCandidates(agent.center, SphericalAgent.IMPACT_RADIUS),
+                    dt);
+        });
         for (SphericalAgent agent : sphericalAgents) {
-            agent.boidUpdate(sphericalAgents, obstacles, dt);
+            agent.commitBoidUpdate();
         }
+        FrameProfiler.end();
+        Metrics.AGENTS_STEP.recordSince(start);
     }
 
     public void updateClan(List<List<SphericalAgent>> flocks, List<SphericalObstacle> obstacles, float dt) {
+        long start = Metrics.AGENTS_STEP.start();
+        FrameProfiler.begin("boids");
+        // One spatial hash per flock so that own flock and other flocks can still be told apart
+        List<SpatialHash<SphericalAgent>> flockHashes = new ArrayList<>(flocks.size());
+        for (List<SphericalAgent> flock : flocks) {
+            flockHashes.add(buildFlockHash(flock));
+        }
+        FrameProfiler.begin("collision");
+        obstacleBroadPhase = ObstacleBroadPhase.of(obstacleBroadPhase, obstacles);
+        FrameProfiler.end();
         for (int i = 0; i < flocks.size(); i++) {
+            final int flockNumber = i;
             List<SphericalAgent> flock = flocks.get(i);
+            forEachAgent(flock.size(), j -> {
+                SphericalAgent agent = flock.get(j);
+                List<List<SphericalAgent>> neighbourhoods = new ArrayList<>(flockHashes.size());
+                for (SpatialHash<SphericalAgent> flockHash : flockHashes) {
+                    neighbourhoods.add(flockHash.getNeighbourCandidates(agent.center));
+                }
+                agent.planBoidUpdateClan(
+                        neighbourhoods,
+                        obstacleBroadPhase.getCandidates(agent.center, SphericalAgent.IMPACT_RADIUS),
+                        flockNumber,
+                        dt);
+            });
+        }
+        for (List<SphericalAgent> flock : flocks) {
             for (SphericalAgent agent : flock) {
-                agent.boidUpdateClan(flocks, obstacles, i, dt);
+                agent.commitBoidUpdate();
             }
         }
+        FrameProfiler.end();
+        Metrics.AGENTS_STEP.recordSince(start);
+    }
+
+    static void forEachAgent(int numAgents, IntConsumer step) {
+        if (PARALLEL_LOCAL_INTERACTIONS) {
+            IntStream.range(0, numAgents).parallel().forEach(step);
+        } else {
+            IntStream.range(0, numAgents).forEach(step);
+        }
+    }
+
+    private static SpatialHash<SphericalAgent> buildFlockHash(List<SphericalAgent> flock) {
+        SpatialHash<SphericalAgent> flockHash = new SpatialHash<>(SphericalAgent.IMPACT_RADIUS);
+        for (SphericalAgent agent : flock) {
+            flockHash.add(agent.center, agent);
+        }
+        return flockHash;
     }
 
     private Vec3 getTTCForceOnI(Vec3 xj, Vec3 xi, Vec3 vj, Vec3 vi, float rj, float ri, boolean withObstacle) {
@@ -108,6 +278,7 @@ public class MultiSphericalAgentSystem {
         Vec3 vji = vj.minus(vi);
 
         final float a = vji.dot(vji);
+        recordTimeToCollision(xji, vji, ri + rj);
         // Separation b/w same group
         if (TTC_SEPARATION_FORCE_K > 0 && (withObstacle || a < 2)) {
             // Almost relatively stationary
@@ -151,12 +322,112 @@ public class MultiSphericalAgentSystem {
         return xji.normalize().scaleInPlace((float) (-TTC_K / Math.pow(timeToCollision, TTC_POWER)));
     }
 
+    private void recordTimeToCollision(Vec3 xji, Vec3 vji, float r) {
+        // Bound on the adaptive sub step imposed by this pair
+        final float a = vji.dot(vji);
+        if (a < 1e-6f) {
+            // Relatively stationary
+            return;
+        }
+        final float b = xji.dot(vji);
+        final float c = xji.dot(xji) - r * r;
+        if (c < 0) {
+            // Already colliding, pair should not pass through each other in a step
+            minPredictedTimeToCollision = Math.min(minPredictedTimeToCollision, r / (float) Math.sqrt(a));
+            return;
+        }
+        float desc = b * b - a * c;
+        if (desc <= 0 || b >= 0) {
+            // Not approaching
+            return;
+        }
+        float timeToCollision = (float) ((-b - Math.sqrt(desc)) / a);
+        minPredictedTimeToCollision = Math.min(minPredictedTimeToCollision, timeToCollision);
+    }
+
+    private static float getTTCObstacleInteractionRadius(SphericalAgent agent, Vec3 velocity) {
+        if (TTC_SEPARATION_FORCE_K > 0) {
+            // Only separation force acts b/w agent and obstacle
+            return agent.description.radius + Math.max(TTC_PERSONAL_SPACE, 0);
+        }
+        // Collision possible only with obstacles reachable within time horizon
+        float speed = velocity.norm();
+        if (speed == 0) {
+            // Also avoids 0 * infinite horizon = NaN
+            return agent.description.radius;
+        }
+        return agent.description.radius + speed * TTC_OBSTACLE_TIME_HORIZON;
+    }
+
     public void updateTTC(List<SphericalObstacle> sphericalObstacles, float dt) {
-        // Get goal velocities
+        long start = Metrics.AGENTS_STEP.start();
+        if (isFollowingTimedPaths) {
+            followTimedPaths(dt);
+        } else {
+            List<Vec3> goalVelocities = getGoalVelocities();
+            List<Vec3> totalTTCForces = getTTCForces(sphericalObstacles, goalVelocities);
+            applyTTCForces(goalVelocities, totalTTCForces, dt);
+        }
+        Metrics.AGENTS_STEP.recordSince(start);
+    }
+
+    public int updateTTCAdaptive(List<SphericalObstacle> sphericalObstacles, float dt) {
+        long start = Metrics.AGENTS_STEP.start();
+        if (isFollowingTimedPaths) {
+            followTimedPaths(dt);
+            Metrics.AGENTS_STEP.recordSince(start);
+            return 1;
+        }
+        // Sub steps are sized by the minimum predicted time to collision in the whole crowd
+        // i.e. big steps when the crowd is sparse and small steps only near contact
+        float remaining = dt;
+        int numSubSteps = 0;
+        while (remaining > 1e-6f) {
+            List<Vec3> goalVelocities = getGoalVelocities();
+            List<Vec3> totalTTCForces = getTTCForces(sphericalObstacles, goalVelocities);
+            // First guess from the goal velocities, it is verified against the post force velocities below
+            float subStep = TTC_SUB_STEP_SAFETY * minPredictedTimeToCollision;
+            subStep = Math.min(Math.max(subStep, TTC_MIN_SUB_STEP), TTC_MAX_SUB_STEP);
+            // A step shorter than this cannot jump over the milestone reached sphere
+            float maxGoalSpeed = 0;
+            for (Vec3 goalVelocity : goalVelocities) {
+                maxGoalSpeed = Math.max(maxGoalSpeed, goalVelocity.norm());
+            }
+            if (maxGoalSpeed > 0) {
+                subStep = Math.min(subStep, Math.max(SphericalAgent.MILESTONE_REACHED_RADIUS / maxGoalSpeed, TTC_MIN_SUB_STEP));
+            }
+            subStep = Math.min(subStep, remaining);
+            // The ttc force changes velocities within the step, so the step is halved until no new contact happens
+            // with the velocities actually integrated
+            // At the min sub step contacts are no longer excluded, they are left to the collision correction force
+            FrameProfiler.begin("ttc integration");
+            List<Vec3> velocities = getTTCVelocities(goalVelocities, totalTTCForces, subStep);
+            while (subStep > TTC_MIN_SUB_STEP && getFirstContactTime(sphericalObstacles, velocities, subStep) < subStep) {
+                subStep = Math.max(subStep / 2, TTC_MIN_SUB_STEP);
+                velocities = getTTCVelocities(goalVelocities, totalTTCForces, subStep);
+            }
+            for (int i = 0; i < sphericalAgents.size(); i++) {
+                sphericalAgents.get(i).ttcUpdate(velocities.get(i).scaleInPlace(subStep));
+            }
+            FrameProfiler.end();
+            remaining -= subStep;
+            numSubSteps++;
+        }
+        Metrics.AGENTS_STEP.recordSince(start);
+        return numSubSteps;
+    }
+
+    private List<Vec3> getGoalVelocities() {
         List<Vec3> goalVelocities = new ArrayList<>();
         for (SphericalAgent agent : sphericalAgents) {
             goalVelocities.add(agent.getGoalVelocity());
         }
+        return goalVelocities;
+    }
+
+    private List<Vec3> getTTCForces(List<SphericalObstacle> sphericalObstacles, List<Vec3> goalVelocities) {
+        FrameProfiler.begin("ttc forces");
+        minPredictedTimeToCollision = Float.POSITIVE_INFINITY;
         // Compute ttc forces
         List<Vec3> totalTTCForces = new ArrayList<>();
         for (int i = 0; i < sphericalAgents.size(); i++) {
@@ -178,16 +449,25 @@ public class MultiSphericalAgentSystem {
             }
         }
         // Agent obstacle interaction
+        FrameProfiler.begin("collision");
+        obstacleBroadPhase = ObstacleBroadPhase.of(obstacleBroadPhase, sphericalObstacles);
         for (int i = 0; i < sphericalAgents.size(); i++) {
             SphericalAgent agentI = sphericalAgents.get(i);
             Vec3 agentIVel = goalVelocities.get(i);
-            for (SphericalObstacle obstacleJ : sphericalObstacles) {
+            for (SphericalObstacle obstacleJ : obstacleBroadPhase.getCandidates(agentI.center, getTTCObstacleInteractionRadius(agentI, agentIVel))) {
                 Vec3 ttcForceOnI = getTTCForceOnI(obstacleJ.center, agentI.center, Vec3.of(0), agentIVel, obstacleJ.radius, agentI.description.radius, true);
                 // Adding to existing ttc forces
                 totalTTCForces.set(i, totalTTCForces.get(i).plusInPlace(ttcForceOnI));
             }
         }
+        FrameProfiler.end();
+        FrameProfiler.end();
+        return totalTTCForces;
+    }
+
+    private void applyTTCForces(List<Vec3> goalVelocities, List<Vec3> totalTTCForces, float dt) {
         // Adding ttc force and prm guided force
+        FrameProfiler.begin("ttc integration");
         for (int i = 0; i < sphericalAgents.size(); i++) {
             SphericalAgent agent = sphericalAgents.get(i);
             Vec3 goalVelocity = goalVelocities.get(i);
@@ -199,6 +479,63 @@ public class MultiSphericalAgentSystem {
             Vec3 displacement = goalVelocity.plusInPlace(ttcVelocity).scaleInPlace(dt);
             agent.ttcUpdate(displacement);
         }
+        FrameProfiler.end();
+    }
+
+    private List<Vec3> getTTCVelocities(List<Vec3> goalVelocities, List<Vec3> totalTTCForces, float dt) {
+        // Velocities applyTTCForces would integrate, 0 for agents that do not move
+        List<Vec3> velocities = new ArrayList<>(sphericalAgents.size());
+        for (int i = 0; i < sphericalAgents.size(); i++) {
+            if (!sphericalAgents.get(i).isMoving()) {
+                velocities.add(Vec3.of(0));
+                continue;
+            }
+            Vec3 ttcForce = Vec3.of(totalTTCForces.get(i));
+            if (ttcForce.norm() > TTC_MAX_FORCE) {
+                ttcForce.normalizeInPlace().scaleInPlace(TTC_MAX_FORCE);
+            }
+            velocities.add(goalVelocities.get(i).plus(ttcForce.scaleInPlace(dt)));
+        }
+        return velocities;
+    }
+
+    private float getFirstContactTime(List<SphericalObstacle> sphericalObstacles, List<Vec3> velocities, float horizon) {
+        // Earliest time in [0, horizon] at which a pair that is apart now touches, infinity if none
+        // Pairs already overlapping are skipped, they are separated by the collision correction force
+        float firstContactTime = Float.POSITIVE_INFINITY;
+        for (int i = 0; i < sphericalAgents.size(); i++) {
+            SphericalAgent agentI = sphericalAgents.get(i);
+            Vec3 velocityI = velocities.get(i);
+            for (int j = i + 1; j < sphericalAgents.size(); j++) {
+                SphericalAgent agentJ = sphericalAgents.get(j);
+                firstContactTime = Math.min(firstContactTime, getContactTime(
+                        agentJ.center.minus(agentI.center), velocities.get(j).minus(velocityI),
+                        agentI.description.radius + agentJ.description.radius, horizon));
+            }
+            float reach = velocityI.norm() * horizon;
+            for (SphericalObstacle obstacle : obstacleBroadPhase.getCandidates(agentI.center, agentI.description.radius + reach)) {
+                firstContactTime = Math.min(firstContactTime, getContactTime(
+                        obstacle.center.minus(agentI.center), velocityI.scale(-1),
+                        agentI.description.radius + obstacle.radius, horizon));
+            }
+        }
+        return firstContactTime;
+    }
+
+    private static float getContactTime(Vec3 xji, Vec3 vji, float r, float horizon) {
+        final float c = xji.dot(xji) - r * r;
+        final float a = vji.dot(vji);
+        final float b = xji.dot(vji);
+        if (c <= 0 || a < 1e-12f || b >= 0) {
+            // Overlapping, relatively stationary or not approaching
+            return Float.POSITIVE_INFINITY;
+        }
+        float desc = b * b - a * c;
+        if (desc <= 0) {
+            return Float.POSITIVE_INFINITY;
+        }
+        float contactTime = (float) ((-b - Math.sqrt(desc)) / a);
+        return contactTime <= horizon ? contactTime : Float.POSITIVE_INFINITY;
     }
 
     public void draw() {
@@ -247,38 +584,165 @@ public class MultiSphericalAgentSystem {
     }
 
     public void dfs() {
+        long start = Metrics.AGENTS_PLAN.start();
+        anytimeSearches.clear();
+        isFollowingTimedPaths = false;
         for (int i = 0; i < sphericalAgents.size(); i++) {
             SphericalAgent agent = sphericalAgents.get(i);
             agent.setPath(multiAgentGraph.dfs(i));
         }
+        printPathCacheStats();
+        Metrics.AGENTS_PLAN.recordSince(start);
     }
 
     public void bfs() {
+        long start = Metrics.AGENTS_PLAN.start();
+        anytimeSearches.clear();
+        isFollowingTimedPaths = false;
         for (int i = 0; i < sphericalAgents.size(); i++) {
             SphericalAgent agent = sphericalAgents.get(i);
             agent.setPath(multiAgentGraph.bfs(i));
         }
+        printPathCacheStats();
+        Metrics.AGENTS_PLAN.recordSince(start);
     }
 
     public void ucs() {
+        long start = Metrics.AGENTS_PLAN.start();
+        anytimeSearches.clear();
+        isFollowingTimedPaths = false;
         for (int i = 0; i < sphericalAgents.size(); i++) {
             SphericalAgent agent = sphericalAgents.get(i);
             agent.setPath(multiAgentGraph.ucs(i));
         }
+        printPathCacheStats();
+        Metrics.AGENTS_PLAN.recordSince(start);
     }
 
     public void aStar() {
+        long start = Metrics.AGENTS_PLAN.start();
+        anytimeSearches.clear();
+        isFollowingTimedPaths = false;
         for (int i = 0; i < sphericalAgents.size(); i++) {
             SphericalAgent agent = sphericalAgents.get(i);
             agent.setPath(multiAgentGraph.aStar(i));
         }
+        printPathCacheStats();
+        Metrics.AGENTS_PLAN.recordSince(start);
     }
 
     public void weightedAStar(float epsilon) {
+        long start = Metrics.AGENTS_PLAN.start();
+        anytimeSearches.clear();
+        isFollowingTimedPaths = false;
         for (int i = 0; i < sphericalAgents.size(); i++) {
             SphericalAgent agent = sphericalAgents.get(i);
             agent.setPath(multiAgentGraph.weightedAStar(epsilon, i));
         }
+        printPathCacheStats();
+        Metrics.AGENTS_PLAN.recordSince(start);
+    }
+
+    public void hierarchicalAStar() {
+        long start = Metrics.AGENTS_PLAN.start();
+        anytimeSearches.clear();
+        isFollowingTimedPaths = false;
+        for (int i = 0; i < sphericalAgents.size(); i++) {
+            SphericalAgent agent = sphericalAgents.get(i);
+            agent.setPath(multiAgentGraph.hierarchicalAStar(i));
+        }
+        printPathCacheStats();
+        Metrics.AGENTS_PLAN.recordSince(start);
+    }
+
+    private void printPathCacheStats() {
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("Path cache hits: " + multiAgentGraph.getNumPathCacheHits()
+                    + ", misses: " + multiAgentGraph.getNumPathCacheMisses()
+                    + ", hit rate: " + multiAgentGraph.getPathCacheHitRate());
+        }
+    }
+
+    public void flowField() {
+        long start = Metrics.AGENTS_PLAN.start();
+        anytimeSearches.clear();
+        isFollowingTimedPaths = false;
+        for (int i = 0; i < sphericalAgents.size(); i++) {
+            SphericalAgent agent = sphericalAgents.get(i);
+            agent.setPath(multiAgentGraph.flowFieldPath(i));
+        }
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("# flow fields: " + multiAgentGraph.getNumFlowFields() + " for # agents: " + sphericalAgents.size());
+        }
+        Metrics.AGENTS_PLAN.recordSince(start);
+    }
+
+    public void anytimeAStar() {
+        long start = Metrics.AGENTS_PLAN.start();
+        anytimeSearches.clear();
+        isFollowingTimedPaths = false;
+        for (int i = 0; i < sphericalAgents.size(); i++) {
+            anytimeSearches.add(startAnytimeSearch(i));
+        }
+        Metrics.AGENTS_PLAN.recordSince(start);
+    }
+
+    private AnytimeRepairingAStar startAnytimeSearch(int i) {
+        AnytimeRepairingAStar search = multiAgentGraph.anytimeAStar(i);
+        // First (most suboptimal) path is found right away so that every agent can start moving
+        while (!search.hasPath() && !search.isDone()) {
+            search.improve(ANYTIME_REFINEMENT_BUDGET_MILLIS);
+        }
+        sphericalAgents.get(i).setPath(search.getPath());
+        return search;
+    }
+
+    public void prioritizedPlanning() {
+        long start = Metrics.AGENTS_PLAN.start();
+        anytimeSearches.clear();
+        float[] radii = new float[sphericalAgents.size()];
+        float[] speeds = new float[sphericalAgents.size()];
+        float maxSpeed = 0;
+        for (int i = 0; i < sphericalAgents.size(); i++) {
+            radii[i] = sphericalAgents.get(i).description.radius;
+            speeds[i] = sphericalAgents.get(i).speed;
+            maxSpeed = Math.max(maxSpeed, speeds[i]);
+        }
+        // Fastest agent moves COORDINATION_STEP_DISTANCE per time step
+        float timeStep = COORDINATION_STEP_DISTANCE / maxSpeed;
+        List<List<Vec3>> timedPaths = multiAgentGraph.prioritizedPlanning(radii, speeds, timeStep);
+        for (int i = 0; i < sphericalAgents.size(); i++) {
+            sphericalAgents.get(i).setTimedPath(timedPaths.get(i), timeStep);
+        }
+        isFollowingTimedPaths = true;
+        Metrics.AGENTS_PLAN.recordSince(start);
+    }
+
+    private void followTimedPaths(float dt) {
+        FrameProfiler.begin("path following");
+        for (SphericalAgent agent : sphericalAgents) {
+            agent.timedUpdate(dt);
+        }
+        FrameProfiler.end();
+    }
+
+    public void refineAnytimePaths() {
+        // Call once per frame, not per step, the budget is spent on every call
+        if (anytimeSearches.isEmpty()) {
+            return;
+        }
+        FrameProfiler.begin("planning");
+        // Round robin so that every agent gets refined over a few frames even with a small budget
+        long deadline = System.currentTimeMillis() + ANYTIME_REFINEMENT_BUDGET_MILLIS;
+        for (int n = 0; n < anytimeSearches.size() && System.currentTimeMillis() < deadline; n++) {
+            int i = nextAnytimeSearch;
+            nextAnytimeSearch = (nextAnytimeSearch + 1) % anytimeSearches.size();
+            AnytimeRepairingAStar search = anytimeSearches.get(i);
+            while (search.improve(Math.max(deadline - System.currentTimeMillis(), 0))) {
+                sphericalAgents.get(i).refinePath(search.getPath());
+            }
+        }
+        FrameProfiler.end();
     }
 
     public void draw(List<PShape> wings) {
@@ -0,0 +1,213 @@
+package robot.acting;
+
+import fixed.SphericalObstacle;
+import math.Vec3;
+import robot.sensing.ObstacleBroadPhase;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class PackedFlock {
+    // Structure of arrays copy of a flock of free agents
+    // Agents are sorted by uniform grid cell, x fastest, so that every row of 3 adjacent cells is a contiguous range
+    int size = 0;
+    float[] x = new float[0], y = new float[0], z = new float[0];
+    float[] vx = new float[0], vy = new float[0], vz = new float[0];
+    float[] fx = new float[0], fy = new float[0], fz = new float[0];
+    int[] agentIndex = new int[0];
+    int[] cellOfAgent = new int[0];
+    int[] cellStart = new int[1];
+    float cellSize = 1;
+    float minX, minY, minZ;
+    int numCellsX = 1, numCellsY = 1, numCellsZ = 1;
+
+    public void load(List<FreeAgent> flock, float impactRadius) {
+        ensureCapacity(flock.size());
+        size = flock.size();
+        if (size == 0) {
+            return;
+        }
+        // Grid bounds
+        minX = minY = minZ = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+        for (FreeAgent agent : flock) {
+            minX = Math.min(minX, agent.center.x);
+            minY = Math.min(minY, agent.center.y);
+            minZ = Math.min(minZ, agent.center.z);
+            maxX = Math.max(maxX, agent.center.x);
+            maxY = Math.max(maxY, agent.center.y);
+            maxZ = Math.max(maxZ, agent.center.z);
+        }
+        // Cells are at least as big as the impact radius, grown for sparse flocks to bound the number of cells
+        cellSize = impactRadius;
+        long maxNumCells = Math.max(1024, 4L * size);
+        while (true) {
+            numCellsX = (int) ((maxX - minX) / cellSize) + 1;
+            numCellsY = (int) ((maxY - minY) / cellSize) + 1;
+            numCellsZ = (int) ((maxZ - minZ) / cellSize) + 1;
+            if ((long) numCellsX * numCellsY * numCellsZ <= maxNumCells) {
+                break;
+            }
+            cellSize *= 1.5f;
+        }
+        int numCells = numCellsX * numCellsY * numCellsZ;
+        if (cellStart.length < numCells + 1) {
+            cellStart = new int[numCells + 1];
+        }
+        // Counting sort of agents by cell
+        Arrays.fill(cellStart, 0, numCells + 1, 0);
+        for (int i = 0; i < size; i++) {
+            FreeAgent agent = flock.get(i);
+            int cell = cellIndex(cellX(agent.center.x), cellY(agent.center.y), cellZ(agent.center.z));
+            cellOfAgent[i] = cell;
+            cellStart[cell + 1]++;
+        }
+        for (int c = 0; c < numCells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] nextSlot = Arrays.copyOf(cellStart, numCells);
+        for (int i = 0; i < size; i++) {
+            FreeAgent agent = flock.get(i);
+            int slot = nextSlot[cellOfAgent[i]]++;
+            x[slot] = agent.center.x;
+            y[slot] = agent.center.y;
+            z[slot] = agent.center.z;
+            vx[slot] = agent.velocity.x;
+            vy[slot] = agent.velocity.y;
+            vz[slot] = agent.velocity.z;
+            agentIndex[slot] = i;
+        }
+    }
+
+    public void computeForces(ObstacleBroadPhase obstacleBroadPhase) {
+        MultiSphericalAgentSystem.forEachAgent(size, slot -> computeForce(slot, obstacleBroadPhase));
+    }
+
+    public void storeForces(List<FreeAgent> flock) {
+        for (int slot = 0; slot < size; slot++) {
+            flock.get(agentIndex[slot]).force.set(fx[slot], fy[slot], fz[slot]);
+        }
+    }
+
+    private void computeForce(int slot, ObstacleBroadPhase obstacleBroadPhase) {
+        final float px = x[slot], py = y[slot], pz = z[slot];
+        final float impactRadius = FreeAgent.IMPACT_RADIUS;
+        final float separationK = FreeAgent.SEPARATION_FORCE_BOID;
+        float separationX = 0, separationY = 0, separationZ = 0;
+        float centroidX = 0, centroidY = 0, centroidZ = 0;
+        float alignmentX = 0, alignmentY = 0, alignmentZ = 0;
+        float neighbours = 0;
+
+        int cx = cellX(px), cy = cellY(py), cz = cellZ(pz);
+        int fromX = Math.max(cx - 1, 0), toX = Math.min(cx + 1, numCellsX - 1);
+        for (int k = Math.max(cz - 1, 0); k <= Math.min(cz + 1, numCellsZ - 1); k++) {
+            for (int j = Math.max(cy - 1, 0); j <= Math.min(cy + 1, numCellsY - 1); j++) {
+                final int end = cellStart[cellIndex(toX, j, k) + 1];
+                // Branch free inner loop over a contiguous row of cells so that it can be vectorized by the JIT
+                for (int n = cellStart[cellIndex(fromX, j, k)]; n < end; n++) {
+                    float dx = px - x[n];
+                    float dy = py - y[n];
+                    float dz = pz - z[n];
+                    float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+                    float inside = (distance < impactRadius && distance > 0) ? 1f : 0f;
+                    float scale = inside * separationK * (impactRadius - distance) / (distance > 1e-6f ? distance : 1f);
+                    separationX += dx * scale;
+                    separationY += dy * scale;
+                    separationZ += dz * scale;
+                    centroidX += x[n] * inside;
+                    centroidY += y[n] * inside;
+                    centroidZ += z[n] * inside;
+                    alignmentX += vx[n] * inside;
+                    alignmentY += vy[n] * inside;
+                    alignmentZ += vz[n] * inside;
+                    neighbours += inside;
+                }
+            }
+        }
+
+        float forceX = separationX, forceY = separationY, forceZ = separationZ;
+        if (neighbours > 0) {
+            // alignment
+            float alignmentNorm = (float) Math.sqrt(alignmentX * alignmentX + alignmentY * alignmentY + alignmentZ * alignmentZ);
+            if (alignmentNorm > 1e-6f) {
+                alignmentX /= alignmentNorm;
+                alignmentY /= alignmentNorm;
+                alignmentZ /= alignmentNorm;
+            }
+            float myDirX = vx[slot], myDirY = vy[slot], myDirZ = vz[slot];
+            float myDirNorm = (float) Math.sqrt(myDirX * myDirX + myDirY * myDirY + myDirZ * myDirZ);
+            if (myDirNorm > 1e-6f) {
+                myDirX /= myDirNorm;
+                myDirY /= myDirNorm;
+                myDirZ /= myDirNorm;
+            }
+            forceX += (alignmentX - myDirX) * FreeAgent.ALIGNMENT_FORCE;
+            forceY += (alignmentY - myDirY) * FreeAgent.ALIGNMENT_FORCE;
+            forceZ += (alignmentZ - myDirZ) * FreeAgent.ALIGNMENT_FORCE;
+            // cohesion
+            float toCentroidX = centroidX / neighbours - px;
+            float toCentroidY = centroidY / neighbours - py;
+            float toCentroidZ = centroidZ / neighbours - pz;
+            float toCentroidNorm = (float) Math.sqrt(toCentroidX * toCentroidX + toCentroidY * toCentroidY + toCentroidZ * toCentroidZ);
+            if (toCentroidNorm > 1e-6f) {
+                forceX += toCentroidX / toCentroidNorm * FreeAgent.CENTROID_FORCE;
+                forceY += toCentroidY / toCentroidNorm * FreeAgent.CENTROID_FORCE;
+                forceZ += toCentroidZ / toCentroidNorm * FreeAgent.CENTROID_FORCE;
+            } else {
+                forceX += toCentroidX * FreeAgent.CENTROID_FORCE;
+                forceY += toCentroidY * FreeAgent.CENTROID_FORCE;
+                forceZ += toCentroidZ * FreeAgent.CENTROID_FORCE;
+            }
+        }
+
+        for (SphericalObstacle obstacle : obstacleBroadPhase.getCandidates(Vec3.of(px, py, pz), impactRadius)) {
+            float dx = px - obstacle.center.x;
+            float dy = py - obstacle.center.y;
+            float dz = pz - obstacle.center.z;
+            float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+            if (distance < impactRadius + obstacle.radius) {
+                float scale = FreeAgent.SEPARATION_FORCE_OBSTACLE / (distance > 1e-6f ? distance : 1);
+                forceX += dx * scale;
+                forceY += dy * scale;
+                forceZ += dz * scale;
+            }
+        }
+
+        fx[slot] = forceX;
+        fy[slot] = forceY;
+        fz[slot] = forceZ;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (x.length >= capacity) {
+            return;
+        }
+        x = new float[capacity];
+        y = new float[capacity];
+        z = new float[capacity];
+        vx = new float[capacity];
+        vy = new float[capacity];
+        vz = new float[capacity];
+        fx = new float[capacity];
+        fy = new float[capacity];
+        fz = new float[capacity];
+        agentIndex = new int[capacity];
+        cellOfAgent = new int[capacity];
+    }
+
+    private int cellX(float coordinate) {
+        return Math.min((int) ((coordinate - minX) / cellSize), numCellsX - 1);
+    }
+
+    private int cellY(float coordinate) {
+        return Math.min((int) ((coordinate - minY) / cellSize), numCellsY - 1);
+    }
+
+    private int cellZ(float coordinate) {
+        return Math.min((int) ((coordinate - minZ) / cellSize), numCellsZ - 1);
+    }
+
+    private int cellIndex(int cellX, int cellY, int cellZ) {
+        return (cellZ * numCellsY + cellY) * numCellsX + cellX;
+    }
+}
@@ -5,6 +5,7 @@ import processing.core.PApplet;
 import robot.input.SphericalAgentDescription;
 import robot.planning.replanninggraph.ReplanningGraph;
 import robot.planning.replanninggraph.Vertex;
+import robot.planning.sampling.UniformSampler;
 import robot.sensing.ConfigurationSpace;
 
 import java.util.ArrayList;
@@ -12,7 +13,7 @@ import java.util.List;
 
 public class ReplanningSphericalAgent {
     public enum Algorithm {
-        DFS, BFS, UCS, AStar, WeightedAStar
+        DFS, BFS, UCS, AStar, WeightedAStar, DStarLite
     }
 
     public static float MILESTONE_REACHED_RADIUS = 2f;
@@ -179,6 +180,9 @@ public class ReplanningSphericalAgent {
             case WeightedAStar:
                 path = replanningGraph.weightedAStar(path.get(currentMilestone), 1.5f);
                 break;
+            case DStarLite:
+                path = replanningGraph.dStarLite(path.get(currentMilestone));
+                break;
         }
         currentMilestone = 0;
     }
@@ -204,15 +208,7 @@ public class ReplanningSphericalAgent {
     }
 
     private List<Vec3> samplePoints(int numberOfPoints) {
-        List<Vec3> samples = new ArrayList<>();
-        for (int i = 0; i < numberOfPoints; i++) {
-            samples.add(Vec3.of(
-                    parent.random(minCorner.x, maxCorner.x),
-                    parent.random(minCorner.y, maxCorner.y),
-                    parent.random(minCorner.z, maxCorner.z)
-            ));
-        }
-        return samples;
+        return new UniformSampler(parent, minCorner, maxCorner).sample(numberOfPoints);
     }
 
 }
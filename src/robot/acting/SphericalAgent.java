@@ -5,6 +5,9 @@ import math.Vec3;
 import processing.core.PApplet;
 import processing.core.PShape;
 import robot.input.SphericalAgentDescription;
+import robot.planning.sampling.FreeSpaceSampler;
+import robot.planning.sampling.Sampler;
+import robot.planning.sampling.UniformSampler;
 import robot.sensing.ConfigurationSpace;
 
 import java.util.ArrayList;
@@ -30,11 +33,21 @@ public class SphericalAgent {
     final Vec3 color;
     final Vec3 minCorner;
     final Vec3 maxCorner;
+    Sampler sampler;
 
     Vec3 center;
     List<Vec3> path = new ArrayList<>();
     int currentMilestone = 0;
     float distanceCovered = 0;
+    // Positions at every time step of a coordinated plan, null when following an untimed path
+    List<Vec3> timedPositions = null;
+    float timeStep = 0;
+    float clock = 0;
+
+    // Next state written by the double buffered boids step
+    final Vec3 nextCenter = Vec3.zero();
+    int nextMilestone = 0;
+    float nextDistanceCovered = 0;
 
     public Vec3 getCenter() {
         return center;
@@ -56,6 +69,7 @@ public class SphericalAgent {
         this.center = Vec3.of(description.startPosition);
         this.minCorner = minCorner;
         this.maxCorner = maxCorner;
+        this.sampler = new UniformSampler(parent, minCorner, maxCorner);
     }
 
     public void update(float dt) {
@@ -80,44 +94,59 @@ public class SphericalAgent {
     }
 
     public void boidUpdate(List<SphericalAgent> flock, List<SphericalObstacle> obstacles, float dt) {
+        planBoidUpdate(flock, obstacles, dt);
+        commitBoidUpdate();
+    }
+
+    void planBoidUpdate(List<SphericalAgent> flock, List<SphericalObstacle> obstacles, float dt) {
+        // Reads only the current state of this agent and its flock, writes only the next state of this agent
+        nextCenter.set(center);
+        nextMilestone = currentMilestone;
+        nextDistanceCovered = distanceCovered;
         if (isPaused) {
             return;
         }
-        if (currentMilestone < path.size() - 1) {
+        if (nextMilestone < path.size() - 1) {
             // reached next milestone
-            if (path.get(currentMilestone + 1).minus(center).norm() < MILESTONE_REACHED_RADIUS) {
-                currentMilestone++;
+            if (path.get(nextMilestone + 1).minus(center).norm() < MILESTONE_REACHED_RADIUS) {
+                nextMilestone++;
                 return;
             }
             // next next milestone lookup
-            if (currentMilestone < path.size() - 2) {
-                boolean blocked = configurationSpace.doesEdgeIntersectSomeObstacle(path.get(currentMilestone + 2), center);
+            if (nextMilestone < path.size() - 2) {
+                boolean blocked = configurationSpace.doesEdgeIntersectSomeObstacle(path.get(nextMilestone + 2), center);
                 if (!blocked) {
-                    currentMilestone++;
+                    nextMilestone++;
                 }
             }
 
-            Vec3 boidVelocity = boidForce(flock, obstacles);
+            Vec3 boidVelocity = boidForce(flock, obstacles, nextMilestone);
             Vec3 velocityDir =
-                    path.get(currentMilestone + 1)
+                    path.get(nextMilestone + 1)
                             .minus(center)
                             .normalizeInPlace();
             Vec3 repelDir = boidVelocity.normalize();
             if (boidVelocity.norm() != 0 && repelDir.cross(velocityDir).norm() < REPULSION) {
-//                System.out.println(currentMilestone);
-                currentMilestone += 1;
+//                System.out.println(nextMilestone);
+                nextMilestone += 1;
                 return;
             }
             // move towards next milestone
             velocityDir.scaleInPlace(speed);
             velocityDir.plusInPlace(boidVelocity);
             Vec3 displacement = velocityDir.scaleInPlace(dt);
-            center.plusInPlace(displacement);
-            distanceCovered += displacement.norm();
+            nextCenter.plusInPlace(displacement);
+            nextDistanceCovered += displacement.norm();
         }
     }
 
-    private Vec3 boidForce(List<SphericalAgent> flock, List<SphericalObstacle> obstacles) {
+    void commitBoidUpdate() {
+        center.set(nextCenter);
+        currentMilestone = nextMilestone;
+        distanceCovered = nextDistanceCovered;
+    }
+
+    private Vec3 boidForce(List<SphericalAgent> flock, List<SphericalObstacle> obstacles, int milestone) {
         Vec3 separationForce = Vec3.zero();
         Vec3 centroid = Vec3.zero();
         Vec3 alignment = Vec3.zero();
@@ -139,7 +168,7 @@ public class SphericalAgent {
         if (neighbors > 0){
             centroid.scaleInPlace(1f / neighbors);
             alignment.normalizeInPlace();
-            Vec3 mydir = path.get(currentMilestone).minus(center).normalizeInPlace();
+            Vec3 mydir = path.get(milestone).minus(center).normalizeInPlace();
             alignmentForce = alignment.minus(mydir);
             alignmentForce.scaleInPlace(ALIGNMENT_FORCE);
             centroidForce = centroid.minus(this.center);
@@ -163,49 +192,57 @@ public class SphericalAgent {
     }
 
     public void boidUpdateClan(List<List<SphericalAgent>> flocks, List<SphericalObstacle> obstacles, int flockNumber, float dt){
+        planBoidUpdateClan(flocks, obstacles, flockNumber, dt);
+        commitBoidUpdate();
+    }
+
+    void planBoidUpdateClan(List<List<SphericalAgent>> flocks, List<SphericalObstacle> obstacles, int flockNumber, float dt){
+        // Reads only the current state of this agent and the flocks, writes only the next state of this agent
+        nextCenter.set(center);
+        nextMilestone = currentMilestone;
+        nextDistanceCovered = distanceCovered;
         if (isPaused) {
             return;
         }
-        if (currentMilestone < path.size() - 1) {
+        if (nextMilestone < path.size() - 1) {
             // reached next milestone
-            if (path.get(currentMilestone + 1).minus(center).norm() < MILESTONE_REACHED_RADIUS) {
-                currentMilestone++;
+            if (path.get(nextMilestone + 1).minus(center).norm() < MILESTONE_REACHED_RADIUS) {
+                nextMilestone++;
                 return;
             }
             // next next milestone lookup
-            if (currentMilestone < path.size() - 2) {
-                boolean blocked = configurationSpace.doesEdgeIntersectSomeObstacle(path.get(currentMilestone + 2), center);
+            if (nextMilestone < path.size() - 2) {
+                boolean blocked = configurationSpace.doesEdgeIntersectSomeObstacle(path.get(nextMilestone + 2), center);
                 if (!blocked) {
-                    currentMilestone++;
+                    nextMilestone++;
                 }
             }
 
-            Vec3 boidVelocity = boidForceClan(flocks, obstacles, flockNumber);
+            Vec3 boidVelocity = boidForceClan(flocks, obstacles, flockNumber, nextMilestone);
             Vec3 velocityDir =
-                    path.get(currentMilestone + 1)
+                    path.get(nextMilestone + 1)
                             .minus(center)
                             .normalizeInPlace();
             Vec3 repelDir = boidVelocity.normalize();
             if (boidVelocity.norm() != 0 && repelDir.cross(velocityDir).norm() == 0) {
-                System.out.println(currentMilestone);
-                currentMilestone += 1;
+                nextMilestone += 1;
                 return;
             }
             // move towards next milestone
             velocityDir.scaleInPlace(speed);
             velocityDir.plusInPlace(boidVelocity);
             Vec3 displacement = velocityDir.scaleInPlace(dt);
-            center.plusInPlace(displacement);
-            distanceCovered += displacement.norm();
+            nextCenter.plusInPlace(displacement);
+            nextDistanceCovered += displacement.norm();
         }
 
     }
 
-    private Vec3 boidForceClan(List<List<SphericalAgent>> flocks, List<SphericalObstacle> obstacles, int flockNumber) {
+    private Vec3 boidForceClan(List<List<SphericalAgent>> flocks, List<SphericalObstacle> obstacles, int flockNumber, int milestone) {
         Vec3 finalForce = Vec3.zero();
         for(int i = 0 ; i < flocks.size(); i++){
             if(i == flockNumber){
-                Vec3 clanForce = boidForce(flocks.get(i), obstacles);
+                Vec3 clanForce = boidForce(flocks.get(i), obstacles, milestone);
                 finalForce.plusInPlace(clanForce);
             }
             else{
@@ -256,6 +293,11 @@ public class SphericalAgent {
         return Vec3.of(0);
     }
 
+    public boolean isMoving() {
+        // ttcUpdate moves the agent only while it is not paused and has not reached its finish
+        return !isPaused && currentMilestone < path.size() - 1;
+    }
+
     public void ttcUpdate(Vec3 displacement) {
         if (isPaused) {
             return;
@@ -434,6 +476,52 @@ public class SphericalAgent {
         this.path = new ArrayList<>(path);
         currentMilestone = 0;
         center.set(description.startPosition);
+        timedPositions = null;
+    }
+
+    public void setTimedPath(List<Vec3> positions, float timeStep) {
+        setPath(positions);
+        this.timedPositions = this.path;
+        this.timeStep = timeStep;
+        this.clock = 0;
+    }
+
+    public void timedUpdate(float dt) {
+        // Position is a function of time only, so agents of a coordinated plan stay in sync
+        if (isPaused || timedPositions == null) {
+            return;
+        }
+        clock += dt;
+        int step = (int) (clock / timeStep);
+        Vec3 position;
+        if (step >= timedPositions.size() - 1) {
+            step = timedPositions.size() - 1;
+            position = timedPositions.get(step);
+        } else {
+            Vec3 from = timedPositions.get(step);
+            Vec3 to = timedPositions.get(step + 1);
+            position = from.plus(to.minus(from).scale(clock / timeStep - step));
+        }
+        distanceCovered += position.minus(center).norm();
+        center.set(position);
+        currentMilestone = step;
+    }
+
+    public void refinePath(List<Vec3> refinedPath) {
+        // Agents that have not started use the refined path directly
+        if (currentMilestone == 0 && distanceCovered == 0) {
+            setPath(refinedPath);
+            return;
+        }
+        // Moving agents switch only if the refined path passes through the milestone they are heading to
+        if (currentMilestone >= path.size() - 1) {
+            return;
+        }
+        int index = refinedPath.indexOf(path.get(currentMilestone + 1));
+        if (index > 0) {
+            path = new ArrayList<>(refinedPath);
+            currentMilestone = index - 1;
+        }
     }
 
     public void stepForward() {
@@ -457,15 +545,16 @@ public class SphericalAgent {
     }
 
     public List<Vec3> samplePoints(int numberOfPoints) {
-        List<Vec3> samples = new ArrayList<>();
-        for (int i = 0; i < numberOfPoints; i++) {
-            samples.add(Vec3.of(
-                    parent.random(minCorner.x, maxCorner.x),
-                    parent.random(minCorner.y, maxCorner.y),
-                    parent.random(minCorner.z, maxCorner.z)
-            ));
-        }
-        return samples;
+        return sampler.sample(numberOfPoints);
+    }
+
+    public List<Vec3> sampleFreePoints(int numberOfPoints) {
+        // Only positions outside obstacles, drawn from the current sampler
+        return new FreeSpaceSampler(sampler, configurationSpace).sample(numberOfPoints);
+    }
+
+    public void setSampler(Sampler sampler) {
+        this.sampler = sampler;
     }
 
     public boolean hasReachedEnd() {
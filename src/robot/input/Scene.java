@@ -0,0 +1,31 @@
+package robot.input;
+
+import fixed.SphericalObstacle;
+import math.Vec3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Scene implements SceneListener {
+    // Collects a whole scene, these lists are what configuration spaces and agent systems keep anyway
+    public Vec3 minCorner = Vec3.zero();
+    public Vec3 maxCorner = Vec3.zero();
+    public final List<SphericalObstacle> sphericalObstacles = new ArrayList<>();
+    public final List<SphericalAgentDescription> sphericalAgentDescriptions = new ArrayList<>();
+
+    @Override
+    public void corners(Vec3 minCorner, Vec3 maxCorner) {
+        this.minCorner = minCorner;
+        this.maxCorner = maxCorner;
+    }
+
+    @Override
+    public void obstacle(SphericalObstacle sphericalObstacle) {
+        sphericalObstacles.add(sphericalObstacle);
+    }
+
+    @Override
+    public void agent(SphericalAgentDescription sphericalAgentDescription) {
+        sphericalAgentDescriptions.add(sphericalAgentDescription);
+    }
+}
@@ -0,0 +1,16 @@
+package robot.input;
+
+import fixed.SphericalObstacle;
+import math.Vec3;
+
+public interface SceneListener {
+    // Receives scene records in file order while a scene file is read, nothing is buffered in between
+    default void corners(Vec3 minCorner, Vec3 maxCorner) {
+    }
+
+    default void obstacle(SphericalObstacle sphericalObstacle) {
+    }
+
+    default void agent(SphericalAgentDescription sphericalAgentDescription) {
+    }
+}
@@ -0,0 +1,165 @@
+package robot.input;
+
+import fixed.SphericalObstacle;
+import math.Vec3;
+import processing.core.PApplet;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class SceneReader {
+    // Text scenes have one record per line, # starts a comment
+    //   corners minX minY minZ maxX maxY maxZ
+    //   obstacle x y z radius [r g b]
+    //   agent startX startY startZ finishX finishY finishZ radius
+    // Binary scenes start with BINARY_MAGIC and a version, followed by records of a tag byte and floats (big endian)
+    // obstacles always carry their color, a END_TAG closes the file
+    static final int BINARY_MAGIC = 0x53434E45;
+    static final int BINARY_VERSION = 1;
+    static final byte END_TAG = 0;
+    static final byte CORNERS_TAG = 1;
+    static final byte OBSTACLE_TAG = 2;
+    static final byte AGENT_TAG = 3;
+    static final Vec3 DEFAULT_OBSTACLE_COLOR = Vec3.of(1, 0, 1);
+
+    public static boolean read(PApplet parent, String fileName, SceneListener listener) {
+        // Format is detected from the first bytes, returns false if the file cannot be read or is malformed
+        // Records are delivered as they are read, so after false (e.g. a truncated file) the listener may already
+        // have received part of the scene
+        long start = System.nanoTime();
+        try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(fileName), 1 << 16)) {
+            // available() may be less than the file holds, so the magic is read and a short read means text
+            in.mark(4);
+            byte[] magic = new byte[4];
+            int numMagicBytes = 0;
+            while (numMagicBytes < magic.length) {
+                int numRead = in.read(magic, numMagicBytes, magic.length - numMagicBytes);
+                if (numRead == -1) {
+                    break;
+                }
+                numMagicBytes += numRead;
+            }
+            boolean isBinary = numMagicBytes == magic.length && ByteBuffer.wrap(magic).getInt() == BINARY_MAGIC;
+            int numRecords;
+            if (isBinary) {
+                numRecords = readBinary(parent, new DataInputStream(in), listener);
+            } else {
+                in.reset();
+                numRecords = readText(parent, new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)), listener);
+            }
+            PApplet.println("Scene " + fileName + " read, # records: " + numRecords + " in " + (System.nanoTime() - start) / 1000000 + "ms");
+            return true;
+        } catch (IOException e) {
+            PApplet.println("Could not read scene " + fileName + ": " + e.getMessage());
+            return false;
+        } catch (IllegalArgumentException e) {
+            // Malformed content, the message has the line or record number
+            PApplet.println("Scene " + fileName + " rejected: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static int readBinary(PApplet parent, DataInputStream data, SceneListener listener) throws IOException {
+        if (data.readInt() != BINARY_VERSION) {
+            throw new IllegalArgumentException("Unsupported binary scene version");
+        }
+        int numRecords = 0;
+        while (true) {
+            byte tag = data.readByte();
+            switch (tag) {
+                case END_TAG:
+                    return numRecords;
+                case CORNERS_TAG:
+                    listener.corners(readVec3(data), readVec3(data));
+                    break;
+                case OBSTACLE_TAG:
+                    Vec3 center = readVec3(data);
+                    float radius = data.readFloat();
+                    listener.obstacle(new SphericalObstacle(parent, center, radius, readVec3(data)));
+                    break;
+                case AGENT_TAG:
+                    Vec3 startPosition = readVec3(data);
+                    Vec3 finishPosition = readVec3(data);
+                    listener.agent(new SphericalAgentDescription(startPosition, finishPosition, data.readFloat()));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown record tag " + tag + " after " + numRecords + " records");
+            }
+            numRecords++;
+        }
+    }
+
+    private static Vec3 readVec3(DataInputStream data) throws IOException {
+        float x = data.readFloat();
+        float y = data.readFloat();
+        float z = data.readFloat();
+        return Vec3.of(x, y, z);
+    }
+
+    private static int readText(PApplet parent, BufferedReader reader, SceneListener listener) throws IOException {
+        int numRecords = 0;
+        int lineNumber = 0;
+        float[] values = new float[7];
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            int keywordStart = skipSpaces(line, 0);
+            if (keywordStart == line.length()) {
+                continue;
+            }
+            int keywordEnd = skipToken(line, keywordStart);
+            String keyword = line.substring(keywordStart, keywordEnd);
+            int numValues = parseFloats(line, keywordEnd, values, lineNumber);
+            if (keyword.equals("corners") && numValues == 6) {
+                listener.corners(Vec3.of(values[0], values[1], values[2]), Vec3.of(values[3], values[4], values[5]));
+            } else if (keyword.equals("obstacle") && (numValues == 4 || numValues == 7)) {
+                Vec3 color = numValues == 7 ? Vec3.of(values[4], values[5], values[6]) : Vec3.of(DEFAULT_OBSTACLE_COLOR);
+                listener.obstacle(new SphericalObstacle(parent, Vec3.of(values[0], values[1], values[2]), values[3], color));
+            } else if (keyword.equals("agent") && numValues == 7) {
+                listener.agent(new SphericalAgentDescription(
+                        Vec3.of(values[0], values[1], values[2]), Vec3.of(values[3], values[4], values[5]), values[6]));
+            } else {
+                throw new IllegalArgumentException("Line " + lineNumber + ": cannot read " + keyword + " with " + numValues + " values");
+            }
+            numRecords++;
+        }
+        return numRecords;
+    }
+
+    private static int skipSpaces(String line, int i) {
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipToken(String line, int i) {
+        while (i < line.length() && !Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int parseFloats(String line, int i, float[] values, int lineNumber) {
+        // Parses the whitespace separated floats from i onwards without splitting the line
+        int numValues = 0;
+        while ((i = skipSpaces(line, i)) < line.length()) {
+            int end = skipToken(line, i);
+            if (numValues == values.length) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": too many values");
+            }
+            try {
+                values[numValues++] = Float.parseFloat(line.substring(i, end));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": " + line.substring(i, end) + " is not a number");
+            }
+            i = end;
+        }
+        return numValues;
+    }
+}
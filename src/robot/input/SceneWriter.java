@@ -0,0 +1,102 @@
+package robot.input;
+
+import fixed.SphericalObstacle;
+import math.Vec3;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+public class SceneWriter implements SceneListener, Closeable {
+    // Writes records as they arrive, so reading one scene into a writer converts between text and binary
+    final DataOutputStream binary;
+    final PrintWriter text;
+
+    public SceneWriter(String fileName, boolean isBinary) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16);
+        if (isBinary) {
+            this.binary = new DataOutputStream(out);
+            this.text = null;
+            binary.writeInt(SceneReader.BINARY_MAGIC);
+            binary.writeInt(SceneReader.BINARY_VERSION);
+        } else {
+            this.binary = null;
+            this.text = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        }
+    }
+
+    private void writeVec3(Vec3 v) {
+        try {
+            binary.writeFloat(v.x);
+            binary.writeFloat(v.y);
+            binary.writeFloat(v.z);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeTag(byte tag) {
+        try {
+            binary.writeByte(tag);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeFloat(float value) {
+        try {
+            binary.writeFloat(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String format(Vec3 v) {
+        return v.x + " " + v.y + " " + v.z;
+    }
+
+    @Override
+    public void corners(Vec3 minCorner, Vec3 maxCorner) {
+        if (binary != null) {
+            writeTag(SceneReader.CORNERS_TAG);
+            writeVec3(minCorner);
+            writeVec3(maxCorner);
+        } else {
+            text.println("corners " + format(minCorner) + " " + format(maxCorner));
+        }
+    }
+
+    @Override
+    public void obstacle(SphericalObstacle sphericalObstacle) {
+        if (binary != null) {
+            writeTag(SceneReader.OBSTACLE_TAG);
+            writeVec3(sphericalObstacle.center);
+            writeFloat(sphericalObstacle.radius);
+            writeVec3(sphericalObstacle.color);
+        } else {
+            text.println("obstacle " + format(sphericalObstacle.center) + " " + sphericalObstacle.radius + " " + format(sphericalObstacle.color));
+        }
+    }
+
+    @Override
+    public void agent(SphericalAgentDescription sphericalAgentDescription) {
+        if (binary != null) {
+            writeTag(SceneReader.AGENT_TAG);
+            writeVec3(sphericalAgentDescription.startPosition);
+            writeVec3(sphericalAgentDescription.finishPosition);
+            writeFloat(sphericalAgentDescription.radius);
+        } else {
+            text.println("agent " + format(sphericalAgentDescription.startPosition) + " " + format(sphericalAgentDescription.finishPosition)
+                    + " " + sphericalAgentDescription.radius);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (binary != null) {
+            binary.writeByte(SceneReader.END_TAG);
+            binary.close();
+        } else {
+            text.close();
+        }
+    }
+}
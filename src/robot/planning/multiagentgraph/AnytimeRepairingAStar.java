@@ -0,0 +1,224 @@
+package robot.planning.multiagentgraph;
+
+import math.Vec3;
+import metrics.Metrics;
+import processing.core.PApplet;
+
+import java.util.*;
+
+public class AnytimeRepairingAStar {
+    // ARA*: weighted A* with a decreasing epsilon, each iteration reuses g values of the previous ones
+    // and only re-expands vertices whose g value improved (the inconsistent ones)
+    public static float INITIAL_EPSILON = 3f;
+    public static float EPSILON_DECREMENT = 0.5f;
+
+    static class Node {
+        final Vertex vertex;
+        final float heuristic;
+        float g = Float.POSITIVE_INFINITY;
+        Node parent = null;
+        boolean isOpen = false;
+        boolean isClosed = false;
+        boolean isInconsistent = false;
+
+        Node(Vertex vertex, float heuristic) {
+            this.vertex = vertex;
+            this.heuristic = heuristic;
+        }
+    }
+
+    static class QueueEntry {
+        final Node node;
+        final float f;
+        final float g;
+
+        QueueEntry(Node node, float f) {
+            this.node = node;
+            this.f = f;
+            this.g = node.g;
+        }
+
+        boolean isStale() {
+            return !node.isOpen || node.g != g;
+        }
+    }
+
+    final MultiAgentGraph graph;
+    final Vertex start;
+    final Vertex finish;
+    // Search states are kept here instead of in the vertices so that every agent can refine its own path
+    final Map<Vertex, Node> nodes = new HashMap<>();
+    final PriorityQueue<QueueEntry> open = new PriorityQueue<>((e1, e2) -> Float.compare(e1.f, e2.f));
+    final List<Node> inconsistent = new ArrayList<>();
+    float epsilon = INITIAL_EPSILON;
+    float publishedEpsilon = Float.POSITIVE_INFINITY;
+    List<Vec3> path;
+    int numVerticesExpanded = 0;
+    boolean isIterationComplete = false;
+    boolean isUnreachable = false;
+
+    AnytimeRepairingAStar(MultiAgentGraph graph, Vertex start, Vertex finish) {
+        this.graph = graph;
+        this.start = start;
+        this.finish = finish;
+        this.path = Collections.singletonList(start.position);
+        Node startNode = nodeOf(start);
+        startNode.g = 0;
+        insert(startNode);
+    }
+
+    private Node nodeOf(Vertex vertex) {
+        return nodes.computeIfAbsent(vertex, v -> new Node(v, graph.heuristic(v, finish)));
+    }
+
+    private void insert(Node node) {
+        node.isOpen = true;
+        open.add(new QueueEntry(node, node.g + epsilon * node.heuristic));
+        Metrics.HEAP_OPERATIONS.increment();
+    }
+
+    private QueueEntry top() {
+        while (open.size() > 0 && open.peek().isStale()) {
+            open.remove();
+            Metrics.HEAP_OPERATIONS.increment();
+        }
+        return open.peek();
+    }
+
+    private boolean improvePath(long deadline) {
+        // Returns false if the deadline was hit before the current epsilon iteration was completed
+        Node finishNode = nodeOf(finish);
+        while (true) {
+            QueueEntry top = top();
+            if (top == null || finishNode.g <= top.f) {
+                return true;
+            }
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            open.remove();
+            Metrics.HEAP_OPERATIONS.increment();
+            Node current = top.node;
+            current.isOpen = false;
+            current.isClosed = true;
+            current.vertex.searchState.setExplored();
+            numVerticesExpanded++;
+            Metrics.NODE_EXPANSIONS.increment();
+            // Lazy graphs drop invalid edges while they are checked, so iterate over a copy
+            List<Vertex> neighbours = graph.lazyConfigurationSpace != null ? new ArrayList<>(current.vertex.neighbours) : current.vertex.neighbours;
+            for (Vertex neighbourVertex : neighbours) {
+                if (!neighbourVertex.isOutsideObstacle) {
+                    continue;
+                }
+                Node neighbour = nodeOf(neighbourVertex);
+                float g = current.g + current.vertex.position.minus(neighbourVertex.position).norm();
+                if (g >= neighbour.g || !graph.isEdgeValid(current.vertex, neighbourVertex)) {
+                    continue;
+                }
+                neighbour.g = g;
+                neighbour.parent = current;
+                if (!neighbour.isClosed) {
+                    insert(neighbour);
+                } else if (!neighbour.isInconsistent) {
+                    neighbour.isInconsistent = true;
+                    inconsistent.add(neighbour);
+                }
+            }
+        }
+    }
+
+    private float suboptimalityBound() {
+        // g(finish) / min over open and inconsistent vertices of (g + h) bounds the ratio to the optimal cost
+        float minF = Float.POSITIVE_INFINITY;
+        for (QueueEntry entry : open) {
+            if (!entry.isStale()) {
+                minF = Math.min(minF, entry.node.g + entry.node.heuristic);
+            }
+        }
+        for (Node node : inconsistent) {
+            minF = Math.min(minF, node.g + node.heuristic);
+        }
+        return Math.max(1, Math.min(epsilon, nodeOf(finish).g / minF));
+    }
+
+    private void publish() {
+        List<Vec3> newPath = new ArrayList<>();
+        Node node = nodeOf(finish);
+        while (node != null) {
+            newPath.add(0, node.vertex.position);
+            node = node.parent;
+        }
+        path = newPath;
+        publishedEpsilon = suboptimalityBound();
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("ARA* published path with epsilon = " + publishedEpsilon
+                    + ", cost = " + nodeOf(finish).g + ", # vertices expanded: " + numVerticesExpanded);
+        }
+    }
+
+    private void decreaseEpsilon() {
+        epsilon = Math.max(1, Math.min(epsilon - EPSILON_DECREMENT, publishedEpsilon));
+        // Move inconsistent vertices to open, re-key open with the new epsilon and forget closed
+        List<Node> nextOpen = new ArrayList<>(inconsistent);
+        for (QueueEntry entry : open) {
+            if (!entry.isStale()) {
+                nextOpen.add(entry.node);
+            }
+        }
+        open.clear();
+        inconsistent.clear();
+        for (Node n : nodes.values()) {
+            n.isOpen = false;
+            n.isClosed = false;
+            n.isInconsistent = false;
+        }
+        for (Node n : nextOpen) {
+            if (!n.isOpen) {
+                insert(n);
+            }
+        }
+    }
+
+    public boolean improve(long timeBudgetMillis) {
+        // Returns true when a better path has been published, false if the time budget ran out or nothing is left to improve
+        // Search effort carries over calls, so the budget can be spread over frames
+        long deadline = System.nanoTime() + timeBudgetMillis * 1000000;
+        if (isDone()) {
+            return false;
+        }
+        if (isIterationComplete) {
+            decreaseEpsilon();
+            isIterationComplete = false;
+        }
+        if (!improvePath(deadline)) {
+            return false;
+        }
+        isIterationComplete = true;
+        if (nodeOf(finish).g == Float.POSITIVE_INFINITY) {
+            if (Metrics.isLoggingQueries()) {
+                PApplet.println("ARA* could not reach finish, # vertices expanded: " + numVerticesExpanded);
+            }
+            isUnreachable = true;
+            return false;
+        }
+        publish();
+        return true;
+    }
+
+    public boolean isDone() {
+        // Optimal path found or finish unreachable
+        return isUnreachable || publishedEpsilon <= 1;
+    }
+
+    public boolean hasPath() {
+        return publishedEpsilon < Float.POSITIVE_INFINITY;
+    }
+
+    public List<Vec3> getPath() {
+        return path;
+    }
+
+    public float getEpsilon() {
+        return publishedEpsilon;
+    }
+}
@@ -0,0 +1,92 @@
+package robot.planning.multiagentgraph;
+
+import math.Vec3;
+import metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+class FlowField {
+    // Reverse dijkstra from a goal over the whole graph, every vertex stores its cost to go and the next vertex towards the goal
+    // Edges are undirected, so searching from the goal gives the same costs as searching to it
+    static class QueueEntry {
+        final int index;
+        final float costToGo;
+
+        QueueEntry(int index, float costToGo) {
+            this.index = index;
+            this.costToGo = costToGo;
+        }
+    }
+
+    final Vec3 goalPosition;
+    final float[] costToGo;
+    final Vertex[] nextHop;
+    int numVerticesExpanded = 0;
+
+    FlowField(MultiAgentGraph graph, Vec3 goalPosition) {
+        List<Vertex> vertices = graph.vertices;
+        this.goalPosition = Vec3.of(goalPosition);
+        this.costToGo = new float[vertices.size()];
+        this.nextHop = new Vertex[vertices.size()];
+        Arrays.fill(costToGo, Float.POSITIVE_INFINITY);
+
+        PriorityQueue<QueueEntry> fringe = new PriorityQueue<>((e1, e2) -> Float.compare(e1.costToGo, e2.costToGo));
+        for (Vertex vertex : vertices) {
+            if (vertex.isOutsideObstacle && vertex.position.equals(goalPosition)) {
+                costToGo[vertex.index] = 0;
+                fringe.add(new QueueEntry(vertex.index, 0));
+                Metrics.HEAP_OPERATIONS.increment();
+            }
+        }
+        while (fringe.size() > 0) {
+            QueueEntry entry = fringe.remove();
+            Metrics.HEAP_OPERATIONS.increment();
+            // Stale entry, vertex was reached with a lower cost later
+            if (entry.costToGo > costToGo[entry.index]) {
+                continue;
+            }
+            numVerticesExpanded++;
+            Metrics.NODE_EXPANSIONS.increment();
+            Vertex current = vertices.get(entry.index);
+            current.searchState.setExplored();
+            // Lazy graphs drop invalid edges while they are checked, so iterate over a copy
+            List<Vertex> neighbours = graph.lazyConfigurationSpace != null ? new ArrayList<>(current.neighbours) : current.neighbours;
+            for (Vertex neighbour : neighbours) {
+                if (!neighbour.isOutsideObstacle) {
+                    continue;
+                }
+                float cost = entry.costToGo + current.position.minus(neighbour.position).norm();
+                if (cost < costToGo[neighbour.index] && graph.isEdgeValid(current, neighbour)) {
+                    costToGo[neighbour.index] = cost;
+                    nextHop[neighbour.index] = current;
+                    fringe.add(new QueueEntry(neighbour.index, cost));
+                    Metrics.HEAP_OPERATIONS.increment();
+                }
+            }
+        }
+    }
+
+    boolean canReachGoal(Vertex vertex) {
+        return costToGo[vertex.index] < Float.POSITIVE_INFINITY;
+    }
+
+    Vertex getNextHop(Vertex vertex) {
+        // Null at the goal and at vertices that can not reach it
+        return nextHop[vertex.index];
+    }
+
+    List<Vec3> pathFrom(Vertex start) {
+        List<Vec3> path = new ArrayList<>();
+        if (!canReachGoal(start)) {
+            path.add(start.position);
+            return path;
+        }
+        for (Vertex vertex = start; vertex != null; vertex = getNextHop(vertex)) {
+            path.add(vertex.position);
+        }
+        return path;
+    }
+}
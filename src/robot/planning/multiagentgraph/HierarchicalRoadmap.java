@@ -0,0 +1,324 @@
+package robot.planning.multiagentgraph;
+
+import math.Vec3;
+import metrics.Metrics;
+import processing.core.PApplet;
+
+import java.util.*;
+
+class HierarchicalRoadmap {
+    // HPA*: the roadmap is split into square clusters, a few edges crossing each cluster border are picked as entrances
+    // and their end points (portals) are connected by the precomputed graph distances inside every cluster
+    // Queries search this coarse graph of portals and then refine every coarse edge by a search inside one cluster
+    static class QueueEntry {
+        final Vertex vertex;
+        final float f;
+        final float g;
+
+        QueueEntry(Vertex vertex, float f, float g) {
+            this.vertex = vertex;
+            this.f = f;
+            this.g = g;
+        }
+    }
+
+    private static final int CLUSTER_INDEX_BITS = 21;
+    private static final long CLUSTER_INDEX_MASK = (1L << CLUSTER_INDEX_BITS) - 1;
+
+    final MultiAgentGraph graph;
+    final float clusterSize;
+    final float portalSpacing;
+    // Cluster of every vertex indexed by vertex index
+    final long[] clusterOf;
+    final Map<Long, List<Vertex>> portalsByCluster = new HashMap<>();
+    // Coarse edges: intra cluster edges with graph distance costs and the chosen entrance edges
+    final Map<Vertex, Map<Vertex, Float>> coarseEdges = new HashMap<>();
+    // Roadmap vertices (after the first portal till the second) of intra cluster coarse edges, so refining them needs no search
+    final Map<Vertex, Map<Vertex, List<Vertex>>> intraClusterPaths = new HashMap<>();
+    // Scratch space of local searches, only touched entries are reset
+    final float[] localCosts;
+    final Vertex[] localParents;
+    final List<Vertex> localTouched = new ArrayList<>();
+    int numLocalVerticesExpanded = 0;
+    int numCoarseVerticesExpanded = 0;
+
+    HierarchicalRoadmap(MultiAgentGraph graph, float clusterSize, float portalSpacing) {
+        this.graph = graph;
+        this.clusterSize = clusterSize;
+        this.portalSpacing = portalSpacing;
+        List<Vertex> vertices = graph.vertices;
+        this.clusterOf = new long[vertices.size()];
+        this.localCosts = new float[vertices.size()];
+        this.localParents = new Vertex[vertices.size()];
+        Arrays.fill(localCosts, Float.POSITIVE_INFINITY);
+        for (Vertex vertex : vertices) {
+            clusterOf[vertex.index] = clusterOf(vertex.position);
+        }
+        addEntrances();
+        connectPortalsInsideClusters();
+        int numCoarseEdges = 0;
+        for (Map<Vertex, Float> edges : coarseEdges.values()) {
+            numCoarseEdges += edges.size();
+        }
+        PApplet.println("# clusters with portals: " + portalsByCluster.size()
+                + ", # portals: " + coarseEdges.size()
+                + ", # coarse edges: " + numCoarseEdges / 2
+                + ", # vertices expanded: " + numLocalVerticesExpanded);
+    }
+
+    private long clusterOf(Vec3 position) {
+        long x = (int) Math.floor(position.x / clusterSize) & CLUSTER_INDEX_MASK;
+        long y = (int) Math.floor(position.y / clusterSize) & CLUSTER_INDEX_MASK;
+        long z = (int) Math.floor(position.z / clusterSize) & CLUSTER_INDEX_MASK;
+        return (x << (2 * CLUSTER_INDEX_BITS)) | (y << CLUSTER_INDEX_BITS) | z;
+    }
+
+    private List<Vertex> neighboursOf(Vertex vertex) {
+        // Lazy graphs drop invalid edges while they are checked, so iterate over a copy
+        return graph.lazyConfigurationSpace != null ? new ArrayList<>(vertex.neighbours) : vertex.neighbours;
+    }
+
+    private void addCoarseEdge(Vertex v1, Vertex v2, float cost) {
+        coarseEdges.computeIfAbsent(v1, v -> new HashMap<>()).merge(v2, cost, Math::min);
+        coarseEdges.computeIfAbsent(v2, v -> new HashMap<>()).merge(v1, cost, Math::min);
+    }
+
+    private void addPortal(Vertex vertex) {
+        if (!coarseEdges.containsKey(vertex)) {
+            portalsByCluster.computeIfAbsent(clusterOf[vertex.index], c -> new ArrayList<>()).add(vertex);
+            coarseEdges.put(vertex, new HashMap<>());
+        }
+    }
+
+    private void addEntrances() {
+        // Border crossing edges are grouped by the pair of clusters they connect
+        // In every group an edge is an entrance only if it is portal spacing away from the entrances already picked
+        Map<List<Long>, List<Vec3>> entranceMidpoints = new HashMap<>();
+        for (Vertex v1 : graph.vertices) {
+            if (!v1.isOutsideObstacle) {
+                continue;
+            }
+            for (Vertex v2 : neighboursOf(v1)) {
+                long c1 = clusterOf[v1.index];
+                long c2 = clusterOf[v2.index];
+                if (c1 >= c2 || !v2.isOutsideObstacle || !graph.isEdgeValid(v1, v2)) {
+                    continue;
+                }
+                Vec3 midpoint = v1.position.plus(v2.position).scaleInPlace(0.5f);
+                List<Vec3> midpoints = entranceMidpoints.computeIfAbsent(Arrays.asList(c1, c2), k -> new ArrayList<>());
+                boolean isFarFromOtherEntrances = true;
+                for (Vec3 other : midpoints) {
+                    if (other.minus(midpoint).norm() < portalSpacing) {
+                        isFarFromOtherEntrances = false;
+                        break;
+                    }
+                }
+                if (isFarFromOtherEntrances) {
+                    midpoints.add(midpoint);
+                    addPortal(v1);
+                    addPortal(v2);
+                    addCoarseEdge(v1, v2, v1.position.minus(v2.position).norm());
+                }
+            }
+        }
+    }
+
+    private void connectPortalsInsideClusters() {
+        for (List<Vertex> portals : portalsByCluster.values()) {
+            for (int i = 0; i < portals.size(); i++) {
+                Vertex portal = portals.get(i);
+                localSearch(portal, null);
+                for (int j = i + 1; j < portals.size(); j++) {
+                    Vertex other = portals.get(j);
+                    if (localCosts[other.index] < Float.POSITIVE_INFINITY) {
+                        addCoarseEdge(portal, other, localCosts[other.index]);
+                        List<Vertex> path = new ArrayList<>();
+                        for (Vertex vertex = other; vertex != portal; vertex = localParents[vertex.index]) {
+                            path.add(0, vertex);
+                        }
+                        List<Vertex> reversedPath = new ArrayList<>(path.subList(0, path.size() - 1));
+                        Collections.reverse(reversedPath);
+                        reversedPath.add(portal);
+                        intraClusterPaths.computeIfAbsent(portal, v -> new HashMap<>()).put(other, path);
+                        intraClusterPaths.computeIfAbsent(other, v -> new HashMap<>()).put(portal, reversedPath);
+                    }
+                }
+                resetLocalSearch();
+            }
+        }
+    }
+
+    private void resetLocalSearch() {
+        for (Vertex vertex : localTouched) {
+            localCosts[vertex.index] = Float.POSITIVE_INFINITY;
+            localParents[vertex.index] = null;
+        }
+        localTouched.clear();
+    }
+
+    private void localSearch(Vertex from, Vertex to) {
+        // A* (dijkstra over the whole cluster if to is null) that never leaves the cluster of from
+        // Results stay in localCosts and localParents till resetLocalSearch
+        long cluster = clusterOf[from.index];
+        PriorityQueue<QueueEntry> fringe = new PriorityQueue<>((e1, e2) -> Float.compare(e1.f, e2.f));
+        localCosts[from.index] = 0;
+        localTouched.add(from);
+        fringe.add(new QueueEntry(from, to == null ? 0 : from.position.minus(to.position).norm(), 0));
+        Metrics.HEAP_OPERATIONS.increment();
+        while (fringe.size() > 0) {
+            QueueEntry entry = fringe.remove();
+            Metrics.HEAP_OPERATIONS.increment();
+            // Stale entry, vertex was reached with a lower cost later
+            if (entry.g > localCosts[entry.vertex.index]) {
+                continue;
+            }
+            numLocalVerticesExpanded++;
+            Metrics.NODE_EXPANSIONS.increment();
+            if (entry.vertex == to) {
+                return;
+            }
+            for (Vertex neighbour : neighboursOf(entry.vertex)) {
+                if (!neighbour.isOutsideObstacle || clusterOf[neighbour.index] != cluster) {
+                    continue;
+                }
+                float g = entry.g + entry.vertex.position.minus(neighbour.position).norm();
+                if (g < localCosts[neighbour.index] && graph.isEdgeValid(entry.vertex, neighbour)) {
+                    if (localCosts[neighbour.index] == Float.POSITIVE_INFINITY) {
+                        localTouched.add(neighbour);
+                    }
+                    localCosts[neighbour.index] = g;
+                    localParents[neighbour.index] = entry.vertex;
+                    fringe.add(new QueueEntry(neighbour, g + (to == null ? 0 : neighbour.position.minus(to.position).norm()), g));
+                    Metrics.HEAP_OPERATIONS.increment();
+                }
+            }
+        }
+    }
+
+    private List<Vertex> localPath(Vertex from, Vertex to) {
+        // Vertices after from till to, null if to can not be reached inside the cluster
+        localSearch(from, to);
+        List<Vertex> path = null;
+        if (localCosts[to.index] < Float.POSITIVE_INFINITY) {
+            path = new ArrayList<>();
+            for (Vertex vertex = to; vertex != from; vertex = localParents[vertex.index]) {
+                path.add(0, vertex);
+            }
+        }
+        resetLocalSearch();
+        return path;
+    }
+
+    private Map<Vertex, Float> costsToPortals(Vertex vertex) {
+        // Temporary coarse edges of a query end point, a portal end point is connected to itself
+        Map<Vertex, Float> costs = new HashMap<>();
+        if (coarseEdges.containsKey(vertex)) {
+            costs.put(vertex, 0f);
+            return costs;
+        }
+        localSearch(vertex, null);
+        for (Vertex portal : portalsByCluster.getOrDefault(clusterOf[vertex.index], Collections.emptyList())) {
+            if (localCosts[portal.index] < Float.POSITIVE_INFINITY) {
+                costs.put(portal, localCosts[portal.index]);
+            }
+        }
+        resetLocalSearch();
+        return costs;
+    }
+
+    private List<Vertex> coarsePath(Vertex start, Vertex finish) {
+        // A* over portals, start is connected to the portals of its cluster and those of the finish cluster to finish
+        Map<Vertex, Float> startEdges = coarseEdges.containsKey(start) ? coarseEdges.get(start) : costsToPortals(start);
+        Map<Vertex, Float> finishEdges = costsToPortals(finish);
+        Map<Vertex, Float> costs = new HashMap<>();
+        Map<Vertex, Vertex> parents = new HashMap<>();
+        Set<Vertex> explored = new HashSet<>();
+        PriorityQueue<QueueEntry> fringe = new PriorityQueue<>((e1, e2) -> Float.compare(e1.f, e2.f));
+        costs.put(start, 0f);
+        fringe.add(new QueueEntry(start, graph.heuristic(start, finish), 0));
+        Metrics.HEAP_OPERATIONS.increment();
+        while (fringe.size() > 0) {
+            QueueEntry entry = fringe.remove();
+            Metrics.HEAP_OPERATIONS.increment();
+            Vertex current = entry.vertex;
+            if (!explored.add(current)) {
+                continue;
+            }
+            numCoarseVerticesExpanded++;
+            Metrics.NODE_EXPANSIONS.increment();
+            if (current == finish) {
+                List<Vertex> path = new ArrayList<>();
+                for (Vertex vertex = finish; vertex != null; vertex = parents.get(vertex)) {
+                    path.add(0, vertex);
+                }
+                return path;
+            }
+            Map<Vertex, Float> edges = current == start ? startEdges : coarseEdges.getOrDefault(current, Collections.emptyMap());
+            for (Map.Entry<Vertex, Float> edge : edges.entrySet()) {
+                relax(current, edge.getKey(), entry.g + edge.getValue(), finish, costs, parents, fringe);
+            }
+            if (finishEdges.containsKey(current)) {
+                relax(current, finish, entry.g + finishEdges.get(current), finish, costs, parents, fringe);
+            }
+        }
+        return null;
+    }
+
+    private void relax(Vertex current, Vertex next, float g, Vertex finish, Map<Vertex, Float> costs, Map<Vertex, Vertex> parents, PriorityQueue<QueueEntry> fringe) {
+        if (g < costs.getOrDefault(next, Float.POSITIVE_INFINITY)) {
+            costs.put(next, g);
+            parents.put(next, current);
+            fringe.add(new QueueEntry(next, g + graph.heuristic(next, finish), g));
+            Metrics.HEAP_OPERATIONS.increment();
+        }
+    }
+
+    List<Vec3> search(Vertex start, Vertex finish) {
+        numLocalVerticesExpanded = 0;
+        numCoarseVerticesExpanded = 0;
+        List<Vec3> path = new ArrayList<>();
+        path.add(start.position);
+        // Ends in the same cluster are first tried without the coarse graph
+        if (clusterOf[start.index] == clusterOf[finish.index]) {
+            List<Vertex> localPath = localPath(start, finish);
+            if (localPath != null) {
+                for (Vertex vertex : localPath) {
+                    path.add(vertex.position);
+                }
+                if (Metrics.isLoggingQueries()) {
+                    PApplet.println("Reached finish inside cluster, # vertices expanded: " + numLocalVerticesExpanded);
+                }
+                return path;
+            }
+        }
+        List<Vertex> coarsePath = coarsePath(start, finish);
+        if (coarsePath == null) {
+            if (Metrics.isLoggingQueries()) {
+                PApplet.println("Could not reach finish, # coarse vertices expanded: " + numCoarseVerticesExpanded
+                        + ", # vertices expanded: " + numLocalVerticesExpanded);
+            }
+            return Collections.singletonList(start.position);
+        }
+        // Refine, entrance edges are roadmap edges and every other coarse edge lies inside one cluster
+        for (int i = 1; i < coarsePath.size(); i++) {
+            Vertex from = coarsePath.get(i - 1);
+            Vertex to = coarsePath.get(i);
+            if (from == to) {
+                continue;
+            }
+            if (clusterOf[from.index] != clusterOf[to.index]) {
+                path.add(to.position);
+                continue;
+            }
+            List<Vertex> intraClusterPath = intraClusterPaths.getOrDefault(from, Collections.emptyMap()).get(to);
+            for (Vertex vertex : intraClusterPath != null ? intraClusterPath : localPath(from, to)) {
+                path.add(vertex.position);
+            }
+        }
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("Reached finish, # coarse vertices expanded: " + numCoarseVerticesExpanded
+                    + ", # vertices expanded: " + numLocalVerticesExpanded);
+        }
+        return path;
+    }
+}
@@ -1,22 +1,70 @@
 package robot.planning.multiagentgraph;
 
+import math.SpatialHash;
 import math.Vec3;
+import metrics.Metrics;
 import processing.core.PApplet;
 import robot.input.SphericalAgentDescription;
 import robot.sensing.ConfigurationSpace;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 public class MultiAgentGraph {
     public static boolean DRAW_VERTICES = true;
     public static boolean DRAW_EDGES = false;
     public static boolean DRAW_ENDS = true;
     public static float END_POINT_SIZE = 2f;
+    // Lazy PRM: edges are only collision checked when they lie on a found path
+    public static boolean LAZY_EDGE_CHECKS = false;
+    // Culled vertices are only kept for drawing, dropping them shrinks the adjacency loop and every search reset
+    public static boolean STORE_OCCUPIED_VERTICES = true;
+    public static boolean CACHE_PATHS = true;
+    public static int PATH_CACHE_CAPACITY = 1024;
+    public static float HIERARCHY_CLUSTER_SIZE = 40f;
+    public static float HIERARCHY_PORTAL_SPACING = 10f;
+    // PRM* bounds hold for any gamma above the theoretical minimum, this is the margin above it
+    public static float PRM_STAR_GAMMA_SCALE = 1.1f;
+
+    public enum ConnectionStrategy {
+        // All pairs within a fixed max edge length
+        RADIUS,
+        // Every vertex to its k nearest vertices, bounded average degree
+        K_NEAREST,
+        // Radius shrinking as (log n / n)^(1 / d), asymptotically optimal (Karaman and Frazzoli)
+        PRM_STAR,
+        // k growing as e (1 + 1 / d) log n, asymptotically optimal
+        K_NEAREST_PRM_STAR
+    }
 
     final PApplet parent;
     final List<Vertex> starts = new ArrayList<>();
     final List<Vertex> finishes = new ArrayList<>();
     final List<Vertex> vertices = new ArrayList<>();
+    // Non null iff adjacencies were generated lazily
+    ConfigurationSpace lazyConfigurationSpace = null;
+    int numLazyEdgesChecked = 0;
+    int numLazyEdgesCulled = 0;
+    // Flow fields by goal position, dropped whenever adjacencies change
+    final Map<Vec3, FlowField> flowFields = new HashMap<>();
+    // Graph distances from each landmark indexed by vertex index, null if landmarks are not generated
+    float[][] landmarkDistances = null;
+    // Search results by (start, finish, algorithm), dropped whenever vertices, adjacencies or heuristics change
+    final PathCache pathCache = new PathCache(PATH_CACHE_CAPACITY);
+    // Report of the last prioritized planning
+    int numConflictsResolved = 0;
+    int numPriorityRestarts = 0;
+    int numUncoordinatedAgents = 0;
+    long prioritizedPlanningNanos = 0;
+    // Built on the first hierarchical query, dropped whenever vertices or adjacencies change
+    HierarchicalRoadmap hierarchicalRoadmap = null;
+    // Free vertices hashed by position with the max edge length as cell size, used to connect inserted vertices
+    // Null until adjacencies are generated
+    SpatialHash<Vertex> vertexIndex = null;
+    float maxEdgeLen = 0;
+    // k of k nearest graphs, 0 for radius graphs
+    int numNearestNeighbours = 0;
+    ConfigurationSpace adjacencyConfigurationSpace = null;
 
     public MultiAgentGraph(PApplet parent, Vec3 startPosition, Vec3 finishPosition) {
         this.parent = parent;
@@ -45,10 +93,17 @@ public class MultiAgentGraph {
     }
 
     public void generateVertices(List<Vec3> newVertexPositions, ConfigurationSpace configurationSpace) {
+        pathCache.clear();
+        hierarchicalRoadmap = null;
+        // New vertices are not connected until adjacencies are generated again
+        vertexIndex = null;
         int numVerticesCulled = 0;
         for (Vec3 position : newVertexPositions) {
             if (configurationSpace.doesVertexIntersectSomeObstacle(position)) {
                 numVerticesCulled++;
+                if (!STORE_OCCUPIED_VERTICES) {
+                    continue;
+                }
                 vertices.add(Vertex.of(
                         parent,
                         position,
@@ -60,25 +115,49 @@ public class MultiAgentGraph {
                         true));
             }
         }
+        if (!STORE_OCCUPIED_VERTICES) {
+            PApplet.println("# vertices culled and dropped: " + numVerticesCulled);
+            PApplet.println("# vertices stored: " + vertices.size());
+            return;
+        }
         PApplet.println("# vertices before culling: " + vertices.size());
         PApplet.println("# vertices culled: " + numVerticesCulled);
         PApplet.println("# vertices after culling: " + (vertices.size() - numVerticesCulled));
     }
 
     public void generateAdjacencies(float maxEdgeLen, ConfigurationSpace configurationSpace) {
+        long start = Metrics.ROADMAP_BUILD.start();
+        flowFields.clear();
+        pathCache.clear();
+        hierarchicalRoadmap = null;
+        landmarkDistances = null;
+        if (LAZY_EDGE_CHECKS) {
+            generateAdjacenciesLazily(maxEdgeLen, configurationSpace);
+            Metrics.ROADMAP_BUILD.recordSince(start);
+            return;
+        }
+        lazyConfigurationSpace = null;
         int numEdges = 0;
         int numEdgesCulled = 0;
-        for (int i = 0; i < vertices.size() - 1; ++i) {
-            for (int j = i + 1; j < vertices.size(); j++) {
-                Vertex v1 = vertices.get(i);
-                Vertex v2 = vertices.get(j);
+        // Neighbours are found using a spatial hash instead of looking at all pairs
+        // Candidates are visited in index order so that neighbour lists come out as with the all pairs loop
+        indexVertices();
+        SpatialHash<Vertex> vertexHash = new SpatialHash<>(maxEdgeLen);
+        for (Vertex vertex : vertices) {
+            vertexHash.add(vertex.position, vertex);
+        }
+        for (Vertex v1 : vertices) {
+            List<Vertex> candidates = vertexHash.getNeighbourCandidates(v1.position);
+            candidates.sort(Comparator.comparingInt(v -> v.index));
+            for (Vertex v2 : candidates) {
+                if (v2.index <= v1.index) {
+                    continue;
+                }
                 if (v1.position.minus(v2.position).norm() <= maxEdgeLen) {
                     // Check for intersection with spherical obstacle
-                    if (!v1.isOutsideObstacle || !v2.isOutsideObstacle || configurationSpace.doesEdgeIntersectSomeObstacle(v1.position, v2.position)) {
+                    if (!v1.isOutsideObstacle || !v2.isOutsideObstacle || !connect(v1, v2, configurationSpace)) {
                         numEdgesCulled++;
                     } else {
-                        v1.addNeighbour(v2, Vec3.of(1));
-                        v2.addNeighbour(v1, Vec3.of(1));
                         numEdges++;
                     }
                 }
@@ -86,14 +165,398 @@ public class MultiAgentGraph {
         }
         PApplet.println("# edges culled: " + numEdgesCulled);
         PApplet.println("# edges generated: " + numEdges);
+        vertexIndex = new SpatialHash<>(maxEdgeLen);
+        for (Vertex vertex : vertices) {
+            if (vertex.isOutsideObstacle) {
+                vertexIndex.add(vertex.position, vertex);
+            }
+        }
+        numNearestNeighbours = 0;
+        this.maxEdgeLen = maxEdgeLen;
+        adjacencyConfigurationSpace = configurationSpace;
+        Metrics.ROADMAP_BUILD.recordSince(start);
+    }
+
+    private void generateAdjacenciesLazily(float maxEdgeLen, ConfigurationSpace configurationSpace) {
+        lazyConfigurationSpace = configurationSpace;
+        int numEdges = 0;
+        // Neighbours are found using a spatial hash instead of looking at all pairs
+        SpatialHash<Vertex> vertexHash = new SpatialHash<>(maxEdgeLen);
+        for (Vertex v1 : vertices) {
+            if (!v1.isOutsideObstacle) {
+                continue;
+            }
+            for (Vertex v2 : vertexHash.getNeighbourCandidates(v1.position)) {
+                // Vertex culling is already known, edge checks are deferred to search
+                if (v1.position.minus(v2.position).norm() <= maxEdgeLen) {
+                    v1.addNeighbour(v2, Vec3.of(1));
+                    v2.addNeighbour(v1, Vec3.of(1));
+                    numEdges++;
+                }
+            }
+            vertexHash.add(v1.position, v1);
+        }
+        PApplet.println("# edges generated without collision checks: " + numEdges);
+        vertexIndex = vertexHash;
+        numNearestNeighbours = 0;
+        this.maxEdgeLen = maxEdgeLen;
+        adjacencyConfigurationSpace = configurationSpace;
+    }
+
+    private boolean connect(Vertex v1, Vertex v2, ConfigurationSpace configurationSpace) {
+        // Lazy graphs check edges at query time
+        if (lazyConfigurationSpace == null && configurationSpace.doesEdgeIntersectSomeObstacle(v1.position, v2.position)) {
+            return false;
+        }
+        v1.addNeighbour(v2, Vec3.of(1));
+        v2.addNeighbour(v1, Vec3.of(1));
+        return true;
+    }
+
+    public void generateKNearestAdjacencies(int k, ConfigurationSpace configurationSpace) {
+        // Edges to the k nearest free vertices of every free vertex (and so from them), culled ones are not replaced
+        long start = System.nanoTime();
+        long buildStart = Metrics.ROADMAP_BUILD.start();
+        flowFields.clear();
+        pathCache.clear();
+        hierarchicalRoadmap = null;
+        landmarkDistances = null;
+        lazyConfigurationSpace = LAZY_EDGE_CHECKS ? configurationSpace : null;
+        indexVertices();
+        vertexIndex = new SpatialHash<>(cellSizeHolding(k));
+        for (Vertex vertex : vertices) {
+            if (vertex.isOutsideObstacle) {
+                vertexIndex.add(vertex.position, vertex);
+            }
+        }
+        int numEdges = 0;
+        int numEdgesCulled = 0;
+        // Pairs that are nearest to each other would be checked twice otherwise
+        Set<Long> culledPairs = new HashSet<>();
+        for (Vertex v1 : vertices) {
+            if (!v1.isOutsideObstacle) {
+                continue;
+            }
+            for (Vertex v2 : vertexIndex.getNearest(v1.position, k + 1, v -> v.position)) {
+                if (v2 == v1 || v1.neighbours.contains(v2)) {
+                    continue;
+                }
+                long pair = (long) Math.min(v1.index, v2.index) * vertices.size() + Math.max(v1.index, v2.index);
+                if (culledPairs.contains(pair)) {
+                    continue;
+                }
+                if (connect(v1, v2, configurationSpace)) {
+                    numEdges++;
+                } else {
+                    culledPairs.add(pair);
+                    numEdgesCulled++;
+                }
+            }
+        }
+        numNearestNeighbours = k;
+        adjacencyConfigurationSpace = configurationSpace;
+        Metrics.ROADMAP_BUILD.recordSince(buildStart);
+        PApplet.println("k = " + k + ", # edges culled: " + numEdgesCulled + ", # edges generated: " + numEdges
+                + ", average degree: " + 2f * numEdges / Math.max(vertexIndex.size(), 1)
+                + ", in " + (System.nanoTime() - start) / 1000000 + "ms");
+    }
+
+    public void generatePRMStarAdjacencies(ConfigurationSpace configurationSpace) {
+        generateAdjacencies(prmStarRadius(), configurationSpace);
+    }
+
+    public void generateKNearestPRMStarAdjacencies(ConfigurationSpace configurationSpace) {
+        int d = Math.max(freeVertexExtents().length, 1);
+        int n = Math.max(numFreeVertices(), 2);
+        generateKNearestAdjacencies((int) Math.ceil(Math.E * (1 + 1f / d) * Math.log(n)), configurationSpace);
+    }
+
+    private int numFreeVertices() {
+        int numFreeVertices = 0;
+        for (Vertex vertex : vertices) {
+            if (vertex.isOutsideObstacle) {
+                numFreeVertices++;
+            }
+        }
+        return numFreeVertices;
+    }
+
+    private float[] freeVertexExtents() {
+        // Extents of the bounding box of free vertices along its non flat axes
+        Vec3 min = Vec3.of(Float.POSITIVE_INFINITY);
+        Vec3 max = Vec3.of(Float.NEGATIVE_INFINITY);
+        for (Vertex vertex : vertices) {
+            if (vertex.isOutsideObstacle) {
+                min.set(Math.min(min.x, vertex.position.x), Math.min(min.y, vertex.position.y), Math.min(min.z, vertex.position.z));
+                max.set(Math.max(max.x, vertex.position.x), Math.max(max.y, vertex.position.y), Math.max(max.z, vertex.position.z));
+            }
+        }
+        List<Float> extents = new ArrayList<>();
+        for (float extent : new float[]{max.x - min.x, max.y - min.y, max.z - min.z}) {
+            if (extent > 0) {
+                extents.add(extent);
+            }
+        }
+        float[] nonFlatExtents = new float[extents.size()];
+        for (int i = 0; i < nonFlatExtents.length; i++) {
+            nonFlatExtents[i] = extents.get(i);
+        }
+        return nonFlatExtents;
+    }
+
+    private float freeVolume(float[] extents) {
+        // Box volume scaled by the free fraction of the samples, culled vertices are only known if they were stored
+        float volume = 1;
+        for (float extent : extents) {
+            volume *= extent;
+        }
+        return volume * numFreeVertices() / vertices.size();
+    }
+
+    private float cellSizeHolding(int k) {
+        // Side of a cell holding about k free vertices
+        float[] extents = freeVertexExtents();
+        int n = numFreeVertices();
+        if (extents.length == 0 || n == 0) {
+            return 1;
+        }
+        return (float) Math.pow(freeVolume(extents) * k / n, 1.0 / extents.length);
+    }
+
+    private float prmStarRadius() {
+        // r = gamma (log n / n)^(1 / d) with gamma > 2 (1 + 1 / d)^(1 / d) (free volume / unit ball volume)^(1 / d)
+        float[] extents = freeVertexExtents();
+        int d = Math.max(extents.length, 1);
+        int n = Math.max(numFreeVertices(), 2);
+        double unitBallVolume = d == 1 ? 2 : d == 2 ? Math.PI : 4 * Math.PI / 3;
+        double gamma = PRM_STAR_GAMMA_SCALE * 2 * Math.pow(1 + 1.0 / d, 1.0 / d) * Math.pow(freeVolume(extents) / unitBallVolume, 1.0 / d);
+        float radius = (float) (gamma * Math.pow(Math.log(n) / n, 1.0 / d));
+        PApplet.println("PRM* radius: " + radius + " for " + n + " free vertices in " + d + " dimensions");
+        return radius;
     }
 
     public void clearAdjacenciesOnlyUseInBSHSpeedUp() {
+        flowFields.clear();
+        pathCache.clear();
+        hierarchicalRoadmap = null;
+        landmarkDistances = null;
         for (Vertex vertex : vertices) {
             vertex.neighbours.clear();
             vertex.edgeColors.clear();
+            vertex.validatedNeighbours.clear();
             vertex.searchState.reset(finishes.get(0).position);
         }
+        vertexIndex = null;
+    }
+
+    void dropDerivedData() {
+        // Distances change with the vertex set and array based tables are indexed by vertex index
+        flowFields.clear();
+        pathCache.clear();
+        hierarchicalRoadmap = null;
+        if (landmarkDistances != null) {
+            PApplet.println("Landmarks dropped, generate them again for the changed roadmap");
+            landmarkDistances = null;
+        }
+    }
+
+    private Vertex insertVertex(Vec3 position, boolean isOutsideObstacle) {
+        Vertex vertex = Vertex.of(parent, position, isOutsideObstacle);
+        vertex.index = vertices.size();
+        vertices.add(vertex);
+        if (isOutsideObstacle && vertexIndex != null) {
+            connectToRoadmap(vertex);
+        }
+        return vertex;
+    }
+
+    void connectToRoadmap(Vertex vertex) {
+        // Connects the vertex to free vertices within the max edge length (or its k nearest) using the vertex index
+        List<Vertex> neighbours = numNearestNeighbours > 0
+                ? vertexIndex.getNearest(vertex.position, numNearestNeighbours, v -> v.position)
+                : vertexIndex.getNeighbourCandidates(vertex.position);
+        for (Vertex neighbour : neighbours) {
+            if (numNearestNeighbours == 0 && neighbour.position.minus(vertex.position).norm() > maxEdgeLen) {
+                continue;
+            }
+            connect(vertex, neighbour, adjacencyConfigurationSpace);
+        }
+        vertexIndex.add(vertex.position, vertex);
+    }
+
+    public void insertVertices(List<Vec3> newVertexPositions) {
+        // Grows the roadmap without regenerating adjacencies, only edges of the new vertices are checked
+        if (vertexIndex == null) {
+            PApplet.println("Generate adjacencies before inserting vertices");
+            return;
+        }
+        long start = System.nanoTime();
+        dropDerivedData();
+        int numVerticesCulled = 0;
+        for (Vec3 position : newVertexPositions) {
+            boolean isOutsideObstacle = !adjacencyConfigurationSpace.doesVertexIntersectSomeObstacle(position);
+            if (!isOutsideObstacle) {
+                numVerticesCulled++;
+                if (!STORE_OCCUPIED_VERTICES) {
+                    continue;
+                }
+            }
+            insertVertex(position, isOutsideObstacle);
+        }
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("# vertices inserted: " + newVertexPositions.size() + ", # culled: " + numVerticesCulled
+                    + ", in " + (System.nanoTime() - start) / 1000 + "us");
+        }
+    }
+
+    public void insertVertex(Vec3 position) {
+        insertVertices(Collections.singletonList(position));
+    }
+
+    private void removeVertices(Set<Vertex> removedVertices) {
+        for (Vertex vertex : removedVertices) {
+            for (Vertex neighbour : vertex.neighbours) {
+                neighbour.removeNeighbour(vertex);
+            }
+            if (vertexIndex != null && vertex.isOutsideObstacle) {
+                vertexIndex.remove(vertex.position, vertex);
+            }
+        }
+        vertices.removeIf(removedVertices::contains);
+        indexVertices();
+        dropDerivedData();
+    }
+
+    public void removeVertices(List<Vec3> positions) {
+        // Removes every vertex at the given positions except starts and finishes of agents
+        long start = System.nanoTime();
+        Set<Vec3> removedPositions = new HashSet<>(positions);
+        Set<Vertex> ends = new HashSet<>(starts);
+        ends.addAll(finishes);
+        Set<Vertex> removedVertices = new HashSet<>();
+        for (Vertex vertex : vertices) {
+            if (removedPositions.contains(vertex.position) && !ends.contains(vertex)) {
+                removedVertices.add(vertex);
+            }
+        }
+        removeVertices(removedVertices);
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("# vertices removed: " + removedVertices.size() + ", in " + (System.nanoTime() - start) / 1000 + "us");
+        }
+    }
+
+    public void removeVertex(Vec3 position) {
+        removeVertices(Collections.singletonList(position));
+    }
+
+    public int addAgent(Vec3 startPosition, Vec3 finishPosition) {
+        // Returns the index of the new agent, its ends are connected right away if adjacencies exist
+        dropDerivedData();
+        starts.add(insertVertex(startPosition, true));
+        finishes.add(insertVertex(finishPosition, true));
+        return starts.size() - 1;
+    }
+
+    public void setFinish(int agentIndex, Vec3 finishPosition) {
+        // Replaces the finish vertex of an agent, the old one is removed unless it is an end of another agent
+        Vertex oldFinish = finishes.get(agentIndex);
+        finishes.set(agentIndex, insertVertex(finishPosition, true));
+        if (!starts.contains(oldFinish) && !finishes.contains(oldFinish)) {
+            removeVertices(Collections.singleton(oldFinish));
+        } else {
+            dropDerivedData();
+        }
+    }
+
+    public boolean saveRoadmap(String fileName, long sceneHash) {
+        // Roadmap without agent ends, tagged with the hash of the scene it was built for
+        return RoadmapFile.save(this, fileName, sceneHash);
+    }
+
+    public boolean loadRoadmap(String fileName, long sceneHash, ConfigurationSpace configurationSpace) {
+        // Replaces generateVertices and generateAdjacencies, returns false if the file is missing or of another scene
+        return RoadmapFile.load(this, fileName, sceneHash, configurationSpace);
+    }
+
+    public int getNumVertices() {
+        return vertices.size();
+    }
+
+    public int getNumEdges() {
+        int numEdgeEnds = 0;
+        for (Vertex vertex : vertices) {
+            numEdgeEnds += vertex.neighbours.size();
+        }
+        return numEdgeEnds / 2;
+    }
+
+    public void sparsify(float stretchFactor) {
+        // Shortest paths between the remaining vertices get at most stretch factor times longer
+        // Edges are dropped by a greedy spanner, then vertices that no shortest path between other vertices needs are
+        long start = System.nanoTime();
+        long buildStart = Metrics.ROADMAP_BUILD.start();
+        int numVerticesBefore = vertices.size();
+        int numEdgesBefore = getNumEdges();
+        indexVertices();
+        new RoadmapSparsifier(this, stretchFactor).sparsifyEdges();
+        pruneVertices();
+        PApplet.println("Sparsified # vertices: " + numVerticesBefore + " -> " + vertices.size()
+                + ", # edges: " + numEdgesBefore + " -> " + getNumEdges()
+                + ", in " + (System.nanoTime() - start) / 1000000 + "ms");
+        Metrics.ROADMAP_BUILD.recordSince(buildStart);
+    }
+
+    private void unlink(Vertex vertex) {
+        for (Vertex neighbour : vertex.neighbours) {
+            neighbour.removeNeighbour(vertex);
+        }
+        vertex.neighbours.clear();
+        vertex.edgeColors.clear();
+        vertex.validatedNeighbours.clear();
+    }
+
+    private void pruneVertices() {
+        // Occupied and isolated vertices are on no path, dead ends are on no path between other vertices
+        // A vertex between exactly two others is replaced by a straight edge if that edge is free, which is shorter
+        Set<Vertex> ends = new HashSet<>(starts);
+        ends.addAll(finishes);
+        Set<Vertex> removedVertices = new HashSet<>();
+        Deque<Vertex> candidates = new ArrayDeque<>(vertices);
+        int numShortcuts = 0;
+        while (candidates.size() > 0) {
+            Vertex vertex = candidates.remove();
+            if (ends.contains(vertex) || removedVertices.contains(vertex)) {
+                continue;
+            }
+            List<Vertex> neighbours = new ArrayList<>(vertex.neighbours);
+            if (!vertex.isOutsideObstacle || neighbours.size() <= 1) {
+                unlink(vertex);
+                removedVertices.add(vertex);
+                candidates.addAll(neighbours);
+                continue;
+            }
+            if (neighbours.size() != 2 || adjacencyConfigurationSpace == null) {
+                continue;
+            }
+            Vertex v1 = neighbours.get(0);
+            Vertex v2 = neighbours.get(1);
+            boolean isShortcutNeeded = !v1.neighbours.contains(v2);
+            if (isShortcutNeeded && adjacencyConfigurationSpace.doesEdgeIntersectSomeObstacle(v1.position, v2.position)) {
+                continue;
+            }
+            unlink(vertex);
+            removedVertices.add(vertex);
+            if (isShortcutNeeded) {
+                v1.addNeighbour(v2, Vec3.of(1));
+                v2.addNeighbour(v1, Vec3.of(1));
+                v1.validatedNeighbours.add(v2);
+                v2.validatedNeighbours.add(v1);
+                numShortcuts++;
+            }
+            candidates.addAll(neighbours);
+        }
+        removeVertices(removedVertices);
+        PApplet.println("# vertices pruned: " + removedVertices.size() + ", # shortcuts: " + numShortcuts);
     }
 
     public void draw() {
@@ -124,13 +587,74 @@ public class MultiAgentGraph {
         }
     }
 
-    private void resetSearchState(Vec3 finishPosition) {
-        PApplet.println("Resetting search states of vertices");
+    private void resetSearchState(Vertex finish) {
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("Resetting search states of vertices");
+        }
         for (Vertex v : vertices) {
             if (v.isOutsideObstacle) {
-                v.searchState.reset(finishPosition);
+                v.searchState.reset(finish.position);
+                v.searchState.heuristicDistanceToFinish = heuristic(v, finish);
+            }
+        }
+    }
+
+    void indexVertices() {
+        for (int i = 0; i < vertices.size(); i++) {
+            vertices.get(i).index = i;
+        }
+    }
+
+    public void generateLandmarks(int numLandmarks) {
+        // ALT: graph distances from a few landmarks give lower bounds to the finish by the triangle inequality
+        // Landmarks are picked farthest first so that they spread to the borders of the roadmap
+        indexVertices();
+        landmarkDistances = null;
+        pathCache.clear();
+        List<float[]> distances = new ArrayList<>();
+        float[] minDistanceToLandmarks = new FlowField(this, starts.get(0).position).costToGo;
+        for (int k = 0; k < numLandmarks; k++) {
+            int farthest = -1;
+            for (int i = 0; i < vertices.size(); i++) {
+                float distance = minDistanceToLandmarks[i];
+                if (distance < Float.POSITIVE_INFINITY && distance > 0
+                        && (farthest == -1 || distance > minDistanceToLandmarks[farthest])) {
+                    farthest = i;
+                }
+            }
+            if (farthest == -1) {
+                break;
+            }
+            float[] distanceFromLandmark = new FlowField(this, vertices.get(farthest).position).costToGo;
+            distances.add(distanceFromLandmark);
+            for (int i = 0; i < vertices.size(); i++) {
+                minDistanceToLandmarks[i] = Math.min(minDistanceToLandmarks[i], distanceFromLandmark[i]);
             }
         }
+        landmarkDistances = distances.toArray(new float[0][]);
+        PApplet.println("# landmarks: " + landmarkDistances.length);
+    }
+
+    public void clearLandmarks() {
+        landmarkDistances = null;
+        pathCache.clear();
+    }
+
+    float heuristic(Vertex vertex, Vertex finish) {
+        // Straight line distance, tightened by landmarks if available
+        float heuristic = vertex.position.minus(finish.position).norm();
+        if (landmarkDistances == null) {
+            return heuristic;
+        }
+        for (float[] distanceFromLandmark : landmarkDistances) {
+            float toVertex = distanceFromLandmark[vertex.index];
+            float toFinish = distanceFromLandmark[finish.index];
+            // Landmarks in another component than either vertex give no bound
+            if (toVertex < Float.POSITIVE_INFINITY && toFinish < Float.POSITIVE_INFINITY) {
+                heuristic = Math.max(heuristic, Math.abs(toFinish - toVertex));
+            }
+        }
+        return heuristic;
     }
 
     private void addToFringe(final Stack<Vertex> fringe, final Vertex current, final Vertex next) {
@@ -138,10 +662,101 @@ public class MultiAgentGraph {
         next.searchState.addToFringeFrom(current);
     }
 
+    boolean isEdgeValid(final Vertex v1, final Vertex v2) {
+        // Edges of eagerly generated graphs are always valid, edges of lazy graphs are checked once and memoized
+        if (lazyConfigurationSpace == null || v1.validatedNeighbours.contains(v2)) {
+            return true;
+        }
+        numLazyEdgesChecked++;
+        if (lazyConfigurationSpace.doesEdgeIntersectSomeObstacle(v1.position, v2.position)) {
+            v1.removeNeighbour(v2);
+            v2.removeNeighbour(v1);
+            numLazyEdgesCulled++;
+            return false;
+        }
+        v1.validatedNeighbours.add(v2);
+        v2.validatedNeighbours.add(v1);
+        return true;
+    }
+
+    private List<Vec3> pathToFinish(final Supplier<Vertex> searchForFinish, int agentIndex) {
+        Vertex finish = searchForFinish.get();
+        if (lazyConfigurationSpace != null) {
+            int numSearches = 1;
+            int numEdgesChecked = numLazyEdgesChecked;
+            int numEdgesCulled = numLazyEdgesCulled;
+            // Validate found path, drop its colliding edges and search again until a valid path is found
+            while (finish != null) {
+                boolean isPathValid = true;
+                Vertex child = finish;
+                while (child.searchState.parentVertex != child) {
+                    Vertex parent = child.searchState.parentVertex;
+                    isPathValid &= isEdgeValid(parent, child);
+                    child = parent;
+                }
+                if (isPathValid) {
+                    break;
+                }
+                numSearches++;
+                finish = searchForFinish.get();
+            }
+            if (Metrics.isLoggingQueries()) {
+                PApplet.println("# searches: " + numSearches
+                        + ", # edges checked: " + (numLazyEdgesChecked - numEdgesChecked)
+                        + ", # edges culled: " + (numLazyEdgesCulled - numEdgesCulled));
+            }
+        }
+        if (finish == null) {
+            return Collections.singletonList(starts.get(agentIndex).position);
+        }
+        return finish.searchState.pathFromStart;
+    }
+
+    private static List<Vec3> timedSearch(final Supplier<List<Vec3>> search) {
+        long start = Metrics.SEARCH.start();
+        List<Vec3> path = search.get();
+        Metrics.SEARCH.recordSince(start);
+        return path;
+    }
+
+    private List<Vec3> cachedPath(final String algorithm, int agentIndex, final Supplier<List<Vec3>> search) {
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println(algorithm);
+        }
+        if (!CACHE_PATHS) {
+            return timedSearch(search);
+        }
+        // Lazily culled edges are never on a cached path (it was validated) and removing edges cannot make
+        // another path shorter, so cached paths survive lazy edge checks
+        PathCache.Key key = new PathCache.Key(starts.get(agentIndex).position, finishes.get(agentIndex).position, algorithm);
+        List<Vec3> path = pathCache.get(key);
+        if (path != null) {
+            if (Metrics.isLoggingQueries()) {
+                PApplet.println("Path cache hit");
+            }
+            return path;
+        }
+        return pathCache.put(key, timedSearch(search));
+    }
+
+    public int getNumPathCacheHits() {
+        return pathCache.numHits;
+    }
+
+    public int getNumPathCacheMisses() {
+        return pathCache.numMisses;
+    }
+
+    public float getPathCacheHitRate() {
+        return pathCache.getHitRate();
+    }
+
     public List<Vec3> dfs(int agentIndex) {
-        PApplet.println("DFS");
+        return cachedPath("DFS", agentIndex, () -> pathToFinish(() -> dfsForFinish(agentIndex), agentIndex));
+    }
 
-        resetSearchState(finishes.get(agentIndex).position);
+    private Vertex dfsForFinish(int agentIndex) {
+        resetSearchState(finishes.get(agentIndex));
         final Stack<Vertex> fringe = new Stack<>();
         int numVerticesExplored = 0;
 
@@ -154,8 +769,11 @@ public class MultiAgentGraph {
             numVerticesExplored++;
             // Check if finish
             if (current.isFinishVertex()) {
-                PApplet.println("Reached finish, # vertices explored: " + numVerticesExplored);
-                return finishes.get(agentIndex).searchState.pathFromStart;
+                if (Metrics.isLoggingQueries()) {
+                    PApplet.println("Reached finish, # vertices explored: " + numVerticesExplored);
+                }
+                Metrics.NODE_EXPANSIONS.add(numVerticesExplored);
+                return current;
             }
             // Mark this vertex as explored
             current.searchState.setExplored();
@@ -167,8 +785,11 @@ public class MultiAgentGraph {
             }
         }
 
-        PApplet.println("Could not reach finish, # vertices explored: " + numVerticesExplored);
-        return Collections.singletonList(starts.get(agentIndex).position);
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("Could not reach finish, # vertices explored: " + numVerticesExplored);
+        }
+        Metrics.NODE_EXPANSIONS.add(numVerticesExplored);
+        return null;
     }
 
     public List<Vec3> dfs() {
@@ -179,10 +800,14 @@ public class MultiAgentGraph {
         next.searchState.distanceFromStart = current.searchState.distanceFromStart + next.position.minus(current.position).norm();
         fringe.add(next);
         next.searchState.addToFringeFrom(current);
+        if (fringe instanceof PriorityQueue) {
+            Metrics.HEAP_OPERATIONS.increment();
+        }
     }
 
-    private List<Vec3> search(final Queue<Vertex> fringe, int agentIndex) {
+    private Vertex searchForFinish(final Queue<Vertex> fringe, int agentIndex) {
         int numVerticesExplored = 0;
+        boolean isHeap = fringe instanceof PriorityQueue;
 
         // Add start to fringe
         addToFringe(fringe, starts.get(agentIndex), starts.get(agentIndex));
@@ -190,10 +815,16 @@ public class MultiAgentGraph {
             // Pop one vertex
             Vertex current = fringe.remove();
             numVerticesExplored++;
+            if (isHeap) {
+                Metrics.HEAP_OPERATIONS.increment();
+            }
             // Check if finish
             if (current.isFinishVertex()) {
-                PApplet.println("Reached finish, # vertices explored: " + numVerticesExplored);
-                return finishes.get(agentIndex).searchState.pathFromStart;
+                if (Metrics.isLoggingQueries()) {
+                    PApplet.println("Reached finish, # vertices explored: " + numVerticesExplored);
+                }
+                Metrics.NODE_EXPANSIONS.add(numVerticesExplored);
+                return current;
             }
             // Mark this vertex as explored
             current.searchState.setExplored();
@@ -205,14 +836,22 @@ public class MultiAgentGraph {
             }
         }
 
-        PApplet.println("Could not reach finish, # vertices explored: " + numVerticesExplored);
-        return Collections.singletonList(starts.get(agentIndex).position);
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("Could not reach finish, # vertices explored: " + numVerticesExplored);
+        }
+        Metrics.NODE_EXPANSIONS.add(numVerticesExplored);
+        return null;
+    }
+
+    private List<Vec3> search(final Supplier<Queue<Vertex>> fringeSupplier, int agentIndex) {
+        return pathToFinish(() -> {
+            resetSearchState(finishes.get(agentIndex));
+            return searchForFinish(fringeSupplier.get(), agentIndex);
+        }, agentIndex);
     }
 
     public List<Vec3> bfs(int agentIndex) {
-        PApplet.println("BFS");
-        resetSearchState(finishes.get(agentIndex).position);
-        return search(new LinkedList<>(), agentIndex);
+        return cachedPath("BFS", agentIndex, () -> search(LinkedList::new, agentIndex));
     }
 
     public List<Vec3> bfs() {
@@ -220,11 +859,9 @@ public class MultiAgentGraph {
     }
 
     public List<Vec3> ucs(int agentIndex) {
-        PApplet.println("UCS");
-        resetSearchState(finishes.get(agentIndex).position);
-        return search(new PriorityQueue<>((v1, v2) ->
-                        (int) (v1.searchState.distanceFromStart - v2.searchState.distanceFromStart)),
-                agentIndex);
+        return cachedPath("UCS", agentIndex, () -> search(() -> new PriorityQueue<>((v1, v2) ->
+                        Float.compare(v1.searchState.distanceFromStart, v2.searchState.distanceFromStart)),
+                agentIndex));
     }
 
     public List<Vec3> ucs() {
@@ -232,12 +869,10 @@ public class MultiAgentGraph {
     }
 
     public List<Vec3> aStar(int agentIndex) {
-        PApplet.println("A*");
-        resetSearchState(finishes.get(agentIndex).position);
-        return search(new PriorityQueue<>((v1, v2) -> (int) (
-                        (v1.searchState.distanceFromStart + v1.searchState.heuristicDistanceToFinish)
-                                - (v2.searchState.distanceFromStart + v2.searchState.heuristicDistanceToFinish))),
-                agentIndex);
+        return cachedPath("A*", agentIndex, () -> search(() -> new PriorityQueue<>((v1, v2) -> Float.compare(
+                        v1.searchState.distanceFromStart + v1.searchState.heuristicDistanceToFinish,
+                        v2.searchState.distanceFromStart + v2.searchState.heuristicDistanceToFinish)),
+                agentIndex));
     }
 
     public List<Vec3> aStar() {
@@ -245,16 +880,105 @@ public class MultiAgentGraph {
     }
 
     public List<Vec3> weightedAStar(final float epislon, int agentIndex) {
-        PApplet.println("Weighted A* with epsilon = " + epislon);
-        resetSearchState(finishes.get(agentIndex).position);
-        return search(new PriorityQueue<>((v1, v2) -> (int) (
-                        (v1.searchState.distanceFromStart + epislon * v1.searchState.heuristicDistanceToFinish)
-                                - (v2.searchState.distanceFromStart + epislon * v2.searchState.heuristicDistanceToFinish))),
-                agentIndex);
+        return cachedPath("Weighted A* with epsilon = " + epislon, agentIndex, () -> search(() -> new PriorityQueue<>((v1, v2) -> Float.compare(
+                        v1.searchState.distanceFromStart + epislon * v1.searchState.heuristicDistanceToFinish,
+                        v2.searchState.distanceFromStart + epislon * v2.searchState.heuristicDistanceToFinish)),
+                agentIndex));
     }
 
     public List<Vec3> weightedAStar(final float epislon) {
         return weightedAStar(epislon, 0);
     }
 
+    FlowField getFlowField(Vec3 goalPosition) {
+        FlowField flowField = flowFields.get(goalPosition);
+        if (flowField == null) {
+            indexVertices();
+            flowField = new FlowField(this, goalPosition);
+            flowFields.put(flowField.goalPosition, flowField);
+            if (Metrics.isLoggingQueries()) {
+                PApplet.println("Flow field to " + goalPosition + ", # vertices expanded: " + flowField.numVerticesExpanded);
+            }
+        }
+        return flowField;
+    }
+
+    public List<Vec3> flowFieldPath(int agentIndex) {
+        // One reverse dijkstra per distinct goal, agents sharing a goal only walk the cached next hops
+        FlowField flowField = getFlowField(finishes.get(agentIndex).position);
+        if (!flowField.canReachGoal(starts.get(agentIndex))) {
+            if (Metrics.isLoggingQueries()) {
+                PApplet.println("Could not reach finish");
+            }
+        }
+        return flowField.pathFrom(starts.get(agentIndex));
+    }
+
+    public int getNumFlowFields() {
+        return flowFields.size();
+    }
+
+    public void generateHierarchy(float clusterSize, float portalSpacing) {
+        long start = System.nanoTime();
+        indexVertices();
+        hierarchicalRoadmap = new HierarchicalRoadmap(this, clusterSize, portalSpacing);
+        pathCache.clear();
+        PApplet.println("Hierarchy generated in " + (System.nanoTime() - start) / 1000000 + "ms");
+    }
+
+    public List<Vec3> hierarchicalAStar(int agentIndex) {
+        // Coarse search over cluster portals refined inside clusters, paths are not guaranteed to be optimal
+        if (hierarchicalRoadmap == null) {
+            generateHierarchy(HIERARCHY_CLUSTER_SIZE, HIERARCHY_PORTAL_SPACING);
+        }
+        // Vertex search states are not used, so there is no per query pass over all vertices
+        return cachedPath("HPA*", agentIndex, () -> hierarchicalRoadmap.search(starts.get(agentIndex), finishes.get(agentIndex)));
+    }
+
+    public List<Vec3> hierarchicalAStar() {
+        return hierarchicalAStar(0);
+    }
+
+    public AnytimeRepairingAStar anytimeAStar(int agentIndex) {
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("ARA* with initial epsilon = " + AnytimeRepairingAStar.INITIAL_EPSILON);
+        }
+        resetSearchState(finishes.get(agentIndex));
+        return new AnytimeRepairingAStar(this, starts.get(agentIndex), finishes.get(agentIndex));
+    }
+
+    public AnytimeRepairingAStar anytimeAStar() {
+        return anytimeAStar(0);
+    }
+
+    public List<List<Vec3>> prioritizedPlanning(float[] radii, float[] speeds, float timeStep) {
+        // Returns positions of every agent at every time step, agents do not come closer than their radii sum at time steps
+        indexVertices();
+        resetSearchState(finishes.get(0));
+        PrioritizedPlanner planner = new PrioritizedPlanner(this, radii, speeds, timeStep);
+        List<List<Vec3>> plans = planner.plan();
+        // Only the report is kept, not the reservations of the planner
+        numConflictsResolved = planner.numConflictsResolved;
+        numPriorityRestarts = planner.numRestarts;
+        numUncoordinatedAgents = planner.numUncoordinated;
+        prioritizedPlanningNanos = planner.searchNanos;
+        return plans;
+    }
+
+    public int getNumConflictsResolved() {
+        return numConflictsResolved;
+    }
+
+    public int getNumPriorityRestarts() {
+        return numPriorityRestarts;
+    }
+
+    public int getNumUncoordinatedAgents() {
+        return numUncoordinatedAgents;
+    }
+
+    public float getPrioritizedPlanningMillis() {
+        return prioritizedPlanningNanos / 1e6f;
+    }
+
 }
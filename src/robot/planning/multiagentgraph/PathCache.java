@@ -0,0 +1,76 @@
+package robot.planning.multiagentgraph;
+
+import math.Vec3;
+
+import java.util.*;
+
+class PathCache {
+    // Bounded LRU map of (start, finish, algorithm) -> path
+    // Start and finish are vertex positions, agents with the same ends share entries
+    static class Key {
+        final Vec3 startPosition;
+        final Vec3 finishPosition;
+        final String algorithm;
+
+        Key(Vec3 startPosition, Vec3 finishPosition, String algorithm) {
+            this.startPosition = Vec3.of(startPosition);
+            this.finishPosition = Vec3.of(finishPosition);
+            this.algorithm = algorithm;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return startPosition.equals(key.startPosition)
+                    && finishPosition.equals(key.finishPosition)
+                    && algorithm.equals(key.algorithm);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(startPosition, finishPosition, algorithm);
+        }
+    }
+
+    final LinkedHashMap<Key, List<Vec3>> paths;
+    int numHits = 0;
+    int numMisses = 0;
+
+    PathCache(final int capacity) {
+        // Access order => iteration starts at the least recently used entry
+        this.paths = new LinkedHashMap<Key, List<Vec3>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<Vec3>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    List<Vec3> get(Key key) {
+        List<Vec3> path = paths.get(key);
+        if (path == null) {
+            numMisses++;
+        } else {
+            numHits++;
+        }
+        return path;
+    }
+
+    List<Vec3> put(Key key, List<Vec3> path) {
+        // Searches return their live path lists, so a copy is kept
+        List<Vec3> copy = Collections.unmodifiableList(new ArrayList<>(path));
+        paths.put(key, copy);
+        return copy;
+    }
+
+    void clear() {
+        paths.clear();
+    }
+
+    float getHitRate() {
+        int numQueries = numHits + numMisses;
+        return numQueries == 0 ? 0 : (float) numHits / numQueries;
+    }
+}
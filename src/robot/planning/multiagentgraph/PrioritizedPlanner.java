@@ -0,0 +1,401 @@
+package robot.planning.multiagentgraph;
+
+import math.SpatialHash;
+import math.Vec3;
+import metrics.Metrics;
+import processing.core.PApplet;
+
+import java.util.*;
+
+class PrioritizedPlanner {
+    // Prioritized planning: agents are planned one after the other over the roadmap
+    // Every planned agent reserves its position at every time step (and its finish after arrival) in a reservation table
+    // If an agent can not be planned it is moved to the front of the priority order and planning restarts
+    public static int MAX_STEPS = 5000;
+    public static int MAX_STATES_EXPANDED_PER_AGENT = 100000;
+
+    static class Reservation {
+        final Vec3 position;
+        final float radius;
+        final Vec3 finishPosition;
+        // Step of the reservation, first step of the stay for parked agents
+        final int step;
+
+        Reservation(Vec3 position, float radius, Vec3 finishPosition, int step) {
+            this.position = position;
+            this.radius = radius;
+            this.finishPosition = finishPosition;
+            this.step = step;
+        }
+    }
+
+    static class SafeInterval {
+        final int start;
+        final int end;
+
+        SafeInterval(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    static class State {
+        final Vertex vertex;
+        final SafeInterval interval;
+        // Earliest step of arrival in the interval, a lower bound till the move from parent is checked
+        final int step;
+        final int f;
+        final State parent;
+        final boolean isMoveChecked;
+
+        State(Vertex vertex, SafeInterval interval, int step, int f, State parent, boolean isMoveChecked) {
+            this.vertex = vertex;
+            this.interval = interval;
+            this.step = step;
+            this.f = f;
+            this.parent = parent;
+            this.isMoveChecked = isMoveChecked;
+        }
+    }
+
+    final MultiAgentGraph graph;
+    final float[] radii;
+    final float[] stepLengths;
+    final float clearance;
+    final float maxRadius;
+    final Map<Integer, SpatialHash<Reservation>> reservationsByStep = new HashMap<>();
+    SpatialHash<Reservation> reservations;
+    SpatialHash<Reservation> parkedReservations;
+    int numStatesExpanded = 0;
+    // Report of the last plan()
+    int numConflictsResolved = 0;
+    int numRestarts = 0;
+    int numUncoordinated = 0;
+    long searchNanos = 0;
+
+    PrioritizedPlanner(MultiAgentGraph graph, float[] radii, float[] speeds, float timeStep) {
+        this.graph = graph;
+        this.radii = radii;
+        this.stepLengths = new float[speeds.length];
+        float maxStepLength = 0;
+        float maxRadius = 0;
+        for (int i = 0; i < speeds.length; i++) {
+            stepLengths[i] = speeds[i] * timeStep;
+            maxStepLength = Math.max(maxStepLength, stepLengths[i]);
+            maxRadius = Math.max(maxRadius, radii[i]);
+        }
+        // Positions are only compared at time steps, so agents keep an extra step worth of distance apart
+        this.clearance = maxStepLength;
+        this.maxRadius = maxRadius;
+    }
+
+    private float cellSize() {
+        return 2 * maxRadius + clearance;
+    }
+
+    private void clearReservations() {
+        reservationsByStep.clear();
+        reservations = new SpatialHash<>(cellSize());
+        parkedReservations = new SpatialHash<>(cellSize());
+    }
+
+    private void reserve(int agent, List<Vec3> positions) {
+        Vec3 finishPosition = graph.finishes.get(agent).position;
+        for (int step = 0; step < positions.size(); step++) {
+            Reservation reservation = new Reservation(positions.get(step), radii[agent], finishPosition, step);
+            reservationsByStep.computeIfAbsent(step, s -> new SpatialHash<>(cellSize())).add(reservation.position, reservation);
+            reservations.add(reservation.position, reservation);
+        }
+        // Agent stays at its finish after arrival
+        parkedReservations.add(finishPosition, new Reservation(finishPosition, radii[agent], finishPosition, positions.size() - 1));
+    }
+
+    private boolean isConflict(int agent, Vec3 position, Reservation reservation) {
+        if (position.minus(reservation.position).norm() >= radii[agent] + reservation.radius + clearance) {
+            return false;
+        }
+        // Agents sharing a finish can not all stand on it, so they are allowed to overlap close to it
+        Vec3 finishPosition = graph.finishes.get(agent).position;
+        return !(finishPosition.equals(reservation.finishPosition)
+                && position.minus(finishPosition).norm() < radii[agent] + reservation.radius + clearance);
+    }
+
+    private float queryRadius(int agent) {
+        return radii[agent] + maxRadius + clearance;
+    }
+
+    private boolean isFree(int agent, Vec3 position, int step) {
+        SpatialHash<Reservation> reservationsAtStep = reservationsByStep.get(step);
+        if (reservationsAtStep != null) {
+            for (Reservation reservation : reservationsAtStep.getCandidates(position, queryRadius(agent))) {
+                if (isConflict(agent, position, reservation)) {
+                    return false;
+                }
+            }
+        }
+        for (Reservation reservation : parkedReservations.getCandidates(position, queryRadius(agent))) {
+            if (reservation.step <= step && isConflict(agent, position, reservation)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<SafeInterval> safeIntervalsOf(int agent, Vertex vertex) {
+        // Maximal runs of steps in which the agent can stand at the vertex, the last one may be unbounded
+        BitSet blockedSteps = new BitSet();
+        int parkedFromStep = Integer.MAX_VALUE;
+        for (Reservation reservation : reservations.getCandidates(vertex.position, queryRadius(agent))) {
+            if (isConflict(agent, vertex.position, reservation)) {
+                blockedSteps.set(reservation.step);
+            }
+        }
+        for (Reservation reservation : parkedReservations.getCandidates(vertex.position, queryRadius(agent))) {
+            if (isConflict(agent, vertex.position, reservation)) {
+                parkedFromStep = Math.min(parkedFromStep, reservation.step);
+            }
+        }
+        List<SafeInterval> safeIntervals = new ArrayList<>();
+        int start = blockedSteps.nextClearBit(0);
+        while (start < parkedFromStep) {
+            int nextBlockedStep = blockedSteps.nextSetBit(start);
+            int end = nextBlockedStep == -1 ? parkedFromStep : Math.min(nextBlockedStep, parkedFromStep);
+            safeIntervals.add(new SafeInterval(start, end == Integer.MAX_VALUE ? end : end - 1));
+            if (nextBlockedStep == -1) {
+                break;
+            }
+            start = blockedSteps.nextClearBit(nextBlockedStep);
+        }
+        return safeIntervals;
+    }
+
+    private int stepsAlong(int agent, float distance) {
+        return Math.max(1, (int) Math.ceil(distance / stepLengths[agent]));
+    }
+
+    private int heuristic(int agent, float[] costToGo, Vertex vertex) {
+        // Edges take a whole number of steps, so this never overestimates the steps to finish
+        return (int) Math.ceil(costToGo[vertex.index] / stepLengths[agent]);
+    }
+
+    private boolean isMoveFree(int agent, Vertex from, Vertex to, int departureStep, int numSteps) {
+        // Only the positions in between, both ends are covered by the safe intervals
+        Vec3 move = to.position.minus(from.position);
+        for (int j = 1; j < numSteps; j++) {
+            if (!isFree(agent, from.position.plus(move.scale((float) j / numSteps)), departureStep + j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int latestArrival(State from, int numSteps) {
+        // Waiting at a vertex is possible till the end of its interval
+        return from.interval.end == Integer.MAX_VALUE ? MAX_STEPS : Math.min(from.interval.end + numSteps, MAX_STEPS);
+    }
+
+    private int checkedArrival(int agent, State from, State to) {
+        // Earliest arrival in the interval for which the positions in between are free too, -1 if there is none
+        int numSteps = stepsAlong(agent, to.vertex.position.minus(from.vertex.position).norm());
+        int lastArrival = Math.min(latestArrival(from, numSteps), to.interval.end);
+        for (int arrival = to.step; arrival <= lastArrival; arrival++) {
+            if (isMoveFree(agent, from.vertex, to.vertex, arrival - numSteps, numSteps)) {
+                return arrival;
+            }
+        }
+        return -1;
+    }
+
+    private List<Vec3> safeIntervalPathPlanning(int agent) {
+        // A* over (vertex, safe interval) states, waiting is folded into the earliest arrival step of each state
+        // Returns positions at every time step from start to arrival at finish or null if no plan is found
+        Vertex start = graph.starts.get(agent);
+        Vertex finish = graph.finishes.get(agent);
+        // Graph distances to finish (shared by agents with the same finish) give a much tighter bound than straight lines
+        float[] costToGo = graph.getFlowField(finish.position).costToGo;
+        Map<Vertex, List<SafeInterval>> safeIntervals = new HashMap<>();
+        List<SafeInterval> startIntervals = safeIntervals.computeIfAbsent(start, v -> safeIntervalsOf(agent, v));
+        if (costToGo[start.index] == Float.POSITIVE_INFINITY || startIntervals.isEmpty() || startIntervals.get(0).start != 0) {
+            return null;
+        }
+        PriorityQueue<State> fringe = new PriorityQueue<>((s1, s2) -> s1.f != s2.f ? Integer.compare(s1.f, s2.f) : Integer.compare(s2.step, s1.step));
+        Map<SafeInterval, Integer> earliestArrivals = new HashMap<>();
+        Set<SafeInterval> explored = new HashSet<>();
+        fringe.add(new State(start, startIntervals.get(0), 0, heuristic(agent, costToGo, start), null, true));
+        Metrics.HEAP_OPERATIONS.increment();
+        int numStatesExpandedForAgent = 0;
+        while (fringe.size() > 0 && numStatesExpandedForAgent < MAX_STATES_EXPANDED_PER_AGENT) {
+            State current = fringe.remove();
+            Metrics.HEAP_OPERATIONS.increment();
+            if (explored.contains(current.interval)) {
+                continue;
+            }
+            // Moves are checked against the reservation table only when popped, most pushed states never are
+            if (!current.isMoveChecked) {
+                int arrival = checkedArrival(agent, current.parent, current);
+                if (arrival != -1 && arrival < earliestArrivals.getOrDefault(current.interval, Integer.MAX_VALUE)) {
+                    earliestArrivals.put(current.interval, arrival);
+                    fringe.add(new State(current.vertex, current.interval, arrival, arrival + heuristic(agent, costToGo, current.vertex), current.parent, true));
+                    Metrics.HEAP_OPERATIONS.increment();
+                }
+                continue;
+            }
+            explored.add(current.interval);
+            numStatesExpanded++;
+            Metrics.NODE_EXPANSIONS.increment();
+            numStatesExpandedForAgent++;
+            // An unbounded interval at finish means the agent can stay there
+            if (current.vertex == finish && current.interval.end == Integer.MAX_VALUE) {
+                return positionsOf(agent, current);
+            }
+            // Lazy graphs drop invalid edges while they are checked, so iterate over a copy
+            List<Vertex> neighbours = graph.lazyConfigurationSpace != null ? new ArrayList<>(current.vertex.neighbours) : current.vertex.neighbours;
+            for (Vertex neighbour : neighbours) {
+                if (!neighbour.isOutsideObstacle || costToGo[neighbour.index] == Float.POSITIVE_INFINITY) {
+                    continue;
+                }
+                int numSteps = stepsAlong(agent, neighbour.position.minus(current.vertex.position).norm());
+                int earliestArrival = current.step + numSteps;
+                int latestArrival = latestArrival(current, numSteps);
+                if (earliestArrival > latestArrival || !graph.isEdgeValid(current.vertex, neighbour)) {
+                    continue;
+                }
+                for (SafeInterval interval : safeIntervals.computeIfAbsent(neighbour, v -> safeIntervalsOf(agent, v))) {
+                    if (interval.start > latestArrival) {
+                        break;
+                    }
+                    if (interval.end < earliestArrival || explored.contains(interval)) {
+                        continue;
+                    }
+                    int arrival = Math.max(earliestArrival, interval.start);
+                    if (arrival >= earliestArrivals.getOrDefault(interval, Integer.MAX_VALUE)) {
+                        continue;
+                    }
+                    // Single step moves have no positions in between to check
+                    boolean isMoveChecked = numSteps == 1;
+                    if (isMoveChecked) {
+                        earliestArrivals.put(interval, arrival);
+                    }
+                    fringe.add(new State(neighbour, interval, arrival, arrival + heuristic(agent, costToGo, neighbour), current, isMoveChecked));
+                    Metrics.HEAP_OPERATIONS.increment();
+                }
+            }
+        }
+        return null;
+    }
+
+    private List<Vec3> positionsOf(int agent, State last) {
+        List<State> states = new ArrayList<>();
+        for (State state = last; state != null; state = state.parent) {
+            states.add(0, state);
+        }
+        List<Vec3> positions = new ArrayList<>();
+        positions.add(states.get(0).vertex.position);
+        for (int i = 1; i < states.size(); i++) {
+            Vec3 from = states.get(i - 1).vertex.position;
+            Vec3 to = states.get(i).vertex.position;
+            int numSteps = stepsAlong(agent, to.minus(from).norm());
+            // Wait at from, then move to to
+            while (positions.size() - 1 < states.get(i).step - numSteps) {
+                positions.add(from);
+            }
+            for (int j = 1; j <= numSteps; j++) {
+                positions.add(from.plus(to.minus(from).scale((float) j / numSteps)));
+            }
+        }
+        return positions;
+    }
+
+    private boolean isConflict(int agent1, List<Vec3> positions1, int agent2, List<Vec3> positions2) {
+        // Agents stay at their last position after arrival
+        int numSteps = Math.max(positions1.size(), positions2.size());
+        for (int step = 0; step < numSteps; step++) {
+            Vec3 p1 = positions1.get(Math.min(step, positions1.size() - 1));
+            Vec3 p2 = positions2.get(Math.min(step, positions2.size() - 1));
+            Reservation reservation = new Reservation(p2, radii[agent2], graph.finishes.get(agent2).position, step);
+            if (isConflict(agent1, p1, reservation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int countConflictingPairs(List<List<Vec3>> plans) {
+        int numConflictingPairs = 0;
+        for (int i = 0; i < plans.size(); i++) {
+            for (int j = i + 1; j < plans.size(); j++) {
+                if (plans.get(i) != null && plans.get(j) != null && isConflict(i, plans.get(i), j, plans.get(j))) {
+                    numConflictingPairs++;
+                }
+            }
+        }
+        return numConflictingPairs;
+    }
+
+    List<List<Vec3>> plan() {
+        long start = System.nanoTime();
+        long metricsStart = Metrics.PRIORITIZED_PLANNING.start();
+        int numAgents = radii.length;
+        // Independent plans, used to count the conflicts that coordination resolves and as fall back
+        clearReservations();
+        List<List<Vec3>> independentPlans = new ArrayList<>();
+        for (int agent = 0; agent < numAgents; agent++) {
+            independentPlans.add(safeIntervalPathPlanning(agent));
+        }
+        int numIndependentConflicts = countConflictingPairs(independentPlans);
+
+        List<Integer> priorities = new ArrayList<>();
+        for (int agent = 0; agent < numAgents; agent++) {
+            priorities.add(agent);
+        }
+        List<List<Vec3>> plans = new ArrayList<>(Collections.nCopies(numAgents, (List<Vec3>) null));
+        numRestarts = 0;
+        numUncoordinated = 0;
+        while (true) {
+            clearReservations();
+            int failedAgent = -1;
+            for (int agent : priorities) {
+                List<Vec3> positions = safeIntervalPathPlanning(agent);
+                if (positions == null) {
+                    failedAgent = agent;
+                    break;
+                }
+                plans.set(agent, positions);
+                reserve(agent, positions);
+            }
+            if (failedAgent == -1) {
+                break;
+            }
+            if (numRestarts == numAgents || priorities.get(0) == failedAgent) {
+                // Give up coordinating, agents from the failed one onwards fall back to their independent plans
+                List<Integer> unplannedAgents = priorities.subList(priorities.indexOf(failedAgent), numAgents);
+                for (int agent : unplannedAgents) {
+                    List<Vec3> independentPlan = independentPlans.get(agent);
+                    plans.set(agent, independentPlan != null ? independentPlan : Collections.singletonList(graph.starts.get(agent).position));
+                }
+                numUncoordinated = unplannedAgents.size();
+                break;
+            }
+            priorities.remove((Integer) failedAgent);
+            priorities.add(0, failedAgent);
+            numRestarts++;
+        }
+        // Agents that fell back to independent plans may keep some of their conflicts, those are not resolved
+        numConflictsResolved = numUncoordinated == 0
+                ? numIndependentConflicts
+                : Math.max(numIndependentConflicts - countConflictingPairs(plans), 0);
+        searchNanos = System.nanoTime() - start;
+        Metrics.CONFLICTS_RESOLVED.add(numConflictsResolved);
+        Metrics.PRIORITY_RESTARTS.add(numRestarts);
+        Metrics.UNCOORDINATED_AGENTS.add(numUncoordinated);
+        Metrics.PRIORITIZED_PLANNING.recordSince(metricsStart);
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("Prioritized planning, # conflicts resolved: " + numConflictsResolved
+                    + ", # restarts: " + numRestarts
+                    + ", # agents without coordinated plan: " + numUncoordinated
+                    + ", # states expanded: " + numStatesExpanded
+                    + ", search time: " + searchNanos / 1000000 + "ms");
+        }
+        return plans;
+    }
+}
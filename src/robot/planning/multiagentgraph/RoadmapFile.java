@@ -0,0 +1,232 @@
+package robot.planning.multiagentgraph;
+
+import math.SpatialHash;
+import math.Vec3;
+import processing.core.PApplet;
+import robot.sensing.ConfigurationSpace;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+class RoadmapFile {
+    // Little endian layout, ints and floats first so that every array is 4 byte aligned
+    // header: magic, version, scene hash (long), flags, # vertices, # edge ends, max edge length, k, index cell size
+    // positions: 3 floats per vertex
+    // offsets: # vertices + 1 ints, neighbours of vertex i are at [offsets[i], offsets[i + 1]) (CSR)
+    // neighbours: vertex index per edge end
+    // free: 1 byte per vertex, 0 for culled vertices
+    // Edge costs are not stored, they are lengths recomputed from positions
+    // Agent starts and finishes are not stored, they are connected to the loaded roadmap instead
+    static final int MAGIC = 0x524D4150;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 40;
+    // Edges were generated without collision checks (lazy PRM)
+    static final int FLAG_UNCHECKED_EDGES = 1;
+
+    private static long fileSize(int numVertices, int numEdgeEnds) {
+        return HEADER_SIZE + 4L * (3L * numVertices + numVertices + 1 + numEdgeEnds) + numVertices;
+    }
+
+    private static Set<Vertex> endsOf(MultiAgentGraph graph) {
+        Set<Vertex> ends = new HashSet<>(graph.starts);
+        ends.addAll(graph.finishes);
+        return ends;
+    }
+
+    static boolean save(MultiAgentGraph graph, String fileName, long sceneHash) {
+        long start = System.nanoTime();
+        Set<Vertex> ends = endsOf(graph);
+        List<Vertex> roadmap = new ArrayList<>();
+        graph.indexVertices();
+        int[] roadmapIndex = new int[graph.vertices.size()];
+        for (Vertex vertex : graph.vertices) {
+            roadmapIndex[vertex.index] = -1;
+            if (!ends.contains(vertex)) {
+                roadmapIndex[vertex.index] = roadmap.size();
+                roadmap.add(vertex);
+            }
+        }
+        int numEdgeEnds = 0;
+        for (Vertex vertex : roadmap) {
+            for (Vertex neighbour : vertex.neighbours) {
+                if (roadmapIndex[neighbour.index] != -1) {
+                    numEdgeEnds++;
+                }
+            }
+        }
+        int numVertices = roadmap.size();
+        long size = fileSize(numVertices, numEdgeEnds);
+        // A mapped buffer is indexed by int
+        if (size > Integer.MAX_VALUE) {
+            PApplet.println("Roadmap not saved to " + fileName + ", " + size / 1024 + "KB is more than one mapping can hold");
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(sceneHash);
+            buffer.putInt(graph.lazyConfigurationSpace != null ? FLAG_UNCHECKED_EDGES : 0);
+            buffer.putInt(numVertices);
+            buffer.putInt(numEdgeEnds);
+            buffer.putFloat(graph.maxEdgeLen);
+            buffer.putInt(graph.numNearestNeighbours);
+            buffer.putFloat(graph.vertexIndex != null ? graph.vertexIndex.getCellSize() : graph.maxEdgeLen);
+            for (Vertex vertex : roadmap) {
+                buffer.putFloat(vertex.position.x);
+                buffer.putFloat(vertex.position.y);
+                buffer.putFloat(vertex.position.z);
+            }
+            int offset = 0;
+            buffer.putInt(offset);
+            for (Vertex vertex : roadmap) {
+                for (Vertex neighbour : vertex.neighbours) {
+                    if (roadmapIndex[neighbour.index] != -1) {
+                        offset++;
+                    }
+                }
+                buffer.putInt(offset);
+            }
+            for (Vertex vertex : roadmap) {
+                for (Vertex neighbour : vertex.neighbours) {
+                    if (roadmapIndex[neighbour.index] != -1) {
+                        buffer.putInt(roadmapIndex[neighbour.index]);
+                    }
+                }
+            }
+            for (Vertex vertex : roadmap) {
+                buffer.put((byte) (vertex.isOutsideObstacle ? 1 : 0));
+            }
+            buffer.force();
+        } catch (IOException e) {
+            PApplet.println("Could not save roadmap to " + fileName + ": " + e.getMessage());
+            return false;
+        }
+        PApplet.println("Roadmap saved to " + fileName + ", # vertices: " + numVertices + ", # edges: " + numEdgeEnds / 2
+                + ", " + size / 1024 + "KB in " + (System.nanoTime() - start) / 1000000 + "ms");
+        return true;
+    }
+
+    static boolean load(MultiAgentGraph graph, String fileName, long sceneHash, ConfigurationSpace configurationSpace) {
+        // Only agent ends may be in the graph, the roadmap replaces vertex and adjacency generation
+        long start = System.nanoTime();
+        Set<Vertex> ends = endsOf(graph);
+        if (graph.vertices.size() != ends.size()) {
+            PApplet.println("Roadmap not loaded, graph already has roadmap vertices");
+            return false;
+        }
+        Path path = Paths.get(fileName);
+        if (!path.toFile().isFile()) {
+            PApplet.println("Roadmap file " + fileName + " not found");
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                PApplet.println("Roadmap file " + fileName + " rejected, it is too large to map");
+                return false;
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.size() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                PApplet.println("Roadmap file " + fileName + " rejected, not a roadmap of this version");
+                return false;
+            }
+            if (buffer.getLong() != sceneHash) {
+                PApplet.println("Roadmap file " + fileName + " rejected, it was built for another scene");
+                return false;
+            }
+            int flags = buffer.getInt();
+            int numVertices = buffer.getInt();
+            int numEdgeEnds = buffer.getInt();
+            float maxEdgeLen = buffer.getFloat();
+            int numNearestNeighbours = buffer.getInt();
+            float indexCellSize = buffer.getFloat();
+            if (numVertices < 0 || numEdgeEnds < 0 || channel.size() != fileSize(numVertices, numEdgeEnds)) {
+                PApplet.println("Roadmap file " + fileName + " rejected, it is truncated");
+                return false;
+            }
+            // Views over the mapped file, nothing is copied before vertices are created
+            FloatBuffer positions = slice(buffer, HEADER_SIZE).asFloatBuffer();
+            IntBuffer offsets = slice(buffer, HEADER_SIZE + 12L * numVertices).asIntBuffer();
+            IntBuffer neighbours = slice(buffer, HEADER_SIZE + 16L * numVertices + 4).asIntBuffer();
+            ByteBuffer free = slice(buffer, HEADER_SIZE + 16L * numVertices + 4 + 4L * numEdgeEnds);
+            if (!isAdjacencyValid(offsets, neighbours, numVertices, numEdgeEnds)) {
+                PApplet.println("Roadmap file " + fileName + " rejected, its adjacency is corrupt");
+                return false;
+            }
+
+            graph.dropDerivedData();
+            int firstIndex = graph.vertices.size();
+            for (int i = 0; i < numVertices; i++) {
+                Vertex vertex = Vertex.of(graph.parent,
+                        Vec3.of(positions.get(3 * i), positions.get(3 * i + 1), positions.get(3 * i + 2)),
+                        free.get(i) != 0);
+                vertex.index = graph.vertices.size();
+                graph.vertices.add(vertex);
+            }
+            for (int i = 0; i < numVertices; i++) {
+                Vertex vertex = graph.vertices.get(firstIndex + i);
+                for (int j = offsets.get(i); j < offsets.get(i + 1); j++) {
+                    vertex.addNeighbour(graph.vertices.get(firstIndex + neighbours.get(j)), Vec3.of(1));
+                }
+            }
+            graph.lazyConfigurationSpace = (flags & FLAG_UNCHECKED_EDGES) != 0 ? configurationSpace : null;
+            graph.adjacencyConfigurationSpace = configurationSpace;
+            graph.maxEdgeLen = maxEdgeLen;
+            graph.numNearestNeighbours = numNearestNeighbours;
+            graph.vertexIndex = new SpatialHash<>(indexCellSize);
+            for (int i = firstIndex; i < graph.vertices.size(); i++) {
+                Vertex vertex = graph.vertices.get(i);
+                if (vertex.isOutsideObstacle) {
+                    graph.vertexIndex.add(vertex.position, vertex);
+                }
+            }
+            for (int i = 0; i < firstIndex; i++) {
+                graph.connectToRoadmap(graph.vertices.get(i));
+            }
+            PApplet.println("Roadmap loaded from " + fileName + ", # vertices: " + numVertices + ", # edges: " + numEdgeEnds / 2
+                    + " in " + (System.nanoTime() - start) / 1000000 + "ms");
+            return true;
+        } catch (IOException e) {
+            PApplet.println("Could not load roadmap from " + fileName + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean isAdjacencyValid(IntBuffer offsets, IntBuffer neighbours, int numVertices, int numEdgeEnds) {
+        // Checked before the graph is touched so that a corrupt file cannot leave it half populated
+        if (offsets.get(0) != 0 || offsets.get(numVertices) != numEdgeEnds) {
+            return false;
+        }
+        for (int i = 0; i < numVertices; i++) {
+            if (offsets.get(i) > offsets.get(i + 1)) {
+                return false;
+            }
+        }
+        for (int j = 0; j < numEdgeEnds; j++) {
+            int neighbour = neighbours.get(j);
+            if (neighbour < 0 || neighbour >= numVertices) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, long position) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position((int) position);
+        return slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,123 @@
+package robot.planning.multiagentgraph;
+
+import math.Vec3;
+import processing.core.PApplet;
+
+import java.util.*;
+
+class RoadmapSparsifier {
+    // Greedy spanner (Althofer et al.): edges are visited by increasing length and an edge is kept only if the kept
+    // edges do not already connect its ends within stretch factor times its length
+    // Every dropped edge is replaced by a kept path at most that much longer, so every shortest path is too
+    static class Edge {
+        final Vertex v1;
+        final Vertex v2;
+        final float length;
+
+        Edge(Vertex v1, Vertex v2) {
+            this.v1 = v1;
+            this.v2 = v2;
+            this.length = v1.position.minus(v2.position).norm();
+        }
+    }
+
+    static class QueueEntry {
+        final Vertex vertex;
+        final float distance;
+
+        QueueEntry(Vertex vertex, float distance) {
+            this.vertex = vertex;
+            this.distance = distance;
+        }
+    }
+
+    final MultiAgentGraph graph;
+    final float stretchFactor;
+    // Kept edges indexed by vertex index
+    final List<List<Vertex>> keptNeighbours = new ArrayList<>();
+    // Scratch space of bounded searches, only touched entries are reset
+    final float[] distances;
+    final List<Vertex> touched = new ArrayList<>();
+    int numEdgesKept = 0;
+    int numVerticesExpanded = 0;
+
+    RoadmapSparsifier(MultiAgentGraph graph, float stretchFactor) {
+        this.graph = graph;
+        this.stretchFactor = stretchFactor;
+        this.distances = new float[graph.vertices.size()];
+        Arrays.fill(distances, Float.POSITIVE_INFINITY);
+        for (int i = 0; i < graph.vertices.size(); i++) {
+            keptNeighbours.add(new ArrayList<>());
+        }
+    }
+
+    private boolean isWithin(Vertex from, Vertex to, float maxDistance) {
+        // Dijkstra over kept edges that gives up beyond max distance
+        PriorityQueue<QueueEntry> open = new PriorityQueue<>((e1, e2) -> Float.compare(e1.distance, e2.distance));
+        distances[from.index] = 0;
+        touched.add(from);
+        open.add(new QueueEntry(from, 0));
+        boolean isReached = false;
+        while (open.size() > 0) {
+            QueueEntry current = open.remove();
+            if (current.distance > distances[current.vertex.index]) {
+                continue;
+            }
+            if (current.vertex == to) {
+                isReached = true;
+                break;
+            }
+            numVerticesExpanded++;
+            for (Vertex neighbour : keptNeighbours.get(current.vertex.index)) {
+                float distance = current.distance + current.vertex.position.minus(neighbour.position).norm();
+                if (distance <= maxDistance && distance < distances[neighbour.index]) {
+                    if (distances[neighbour.index] == Float.POSITIVE_INFINITY) {
+                        touched.add(neighbour);
+                    }
+                    distances[neighbour.index] = distance;
+                    open.add(new QueueEntry(neighbour, distance));
+                }
+            }
+        }
+        for (Vertex vertex : touched) {
+            distances[vertex.index] = Float.POSITIVE_INFINITY;
+        }
+        touched.clear();
+        return isReached;
+    }
+
+    void sparsifyEdges() {
+        List<Edge> edges = new ArrayList<>();
+        for (Vertex v1 : graph.vertices) {
+            for (Vertex v2 : v1.neighbours) {
+                if (v1.index < v2.index) {
+                    edges.add(new Edge(v1, v2));
+                }
+            }
+        }
+        edges.sort((e1, e2) -> Float.compare(e1.length, e2.length));
+        for (Edge edge : edges) {
+            if (isWithin(edge.v1, edge.v2, stretchFactor * edge.length)) {
+                continue;
+            }
+            // Lazy graphs only check edges that would be kept
+            if (!graph.isEdgeValid(edge.v1, edge.v2)) {
+                continue;
+            }
+            keptNeighbours.get(edge.v1.index).add(edge.v2);
+            keptNeighbours.get(edge.v2.index).add(edge.v1);
+            numEdgesKept++;
+        }
+        for (Vertex vertex : graph.vertices) {
+            List<Vertex> neighbours = keptNeighbours.get(vertex.index);
+            vertex.neighbours.clear();
+            vertex.edgeColors.clear();
+            for (Vertex neighbour : neighbours) {
+                vertex.addNeighbour(neighbour, Vec3.of(1));
+            }
+            vertex.validatedNeighbours.retainAll(neighbours);
+        }
+        PApplet.println("Spanner with stretch factor " + stretchFactor + " keeps " + numEdgesKept + " / " + edges.size()
+                + " edges, # vertices expanded: " + numVerticesExpanded);
+    }
+}
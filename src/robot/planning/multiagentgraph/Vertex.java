@@ -4,14 +4,20 @@ import math.Vec3;
 import processing.core.PApplet;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 class Vertex {
     private final PApplet parent;
     final Vec3 position;
     final boolean isOutsideObstacle;
+    // Position in the graph's vertex list, used by array based tables
+    int index = -1;
     final List<Vertex> neighbours = new ArrayList<>();
     final List<Vec3> edgeColors = new ArrayList<>();
+    // Neighbours whose edge has been collision checked at query time, only used by lazy graphs
+    final Set<Vertex> validatedNeighbours = new HashSet<>();
 
     class SearchState {
         boolean isFinish = false;
@@ -19,6 +25,7 @@ class Vertex {
         boolean isExplored = false;
         float distanceFromStart = 0;
         List<Vec3> pathFromStart = new ArrayList<>();
+        Vertex parentVertex = null;
         Vec3 color;
 
         public SearchState() {
@@ -31,6 +38,7 @@ class Vertex {
             isExplored = false;
             distanceFromStart = 0;
             pathFromStart.clear();
+            parentVertex = null;
             if (isOutsideObstacle) {
                 color.set(1, 1, 1);
             } else {
@@ -41,6 +49,7 @@ class Vertex {
         void addToFringeFrom(Vertex parent) {
             color.set(0, 1, 0);
             isExplored = true;
+            parentVertex = parent;
             pathFromStart.addAll(parent.searchState.pathFromStart);
             pathFromStart.add(Vertex.this.position);
         }
@@ -85,6 +94,15 @@ class Vertex {
         edgeColors.add(color);
     }
 
+    void removeNeighbour(Vertex other) {
+        int index = neighbours.indexOf(other);
+        if (index >= 0) {
+            neighbours.remove(index);
+            edgeColors.remove(index);
+        }
+        validatedNeighbours.remove(other);
+    }
+
     boolean isFinishVertex() {
         return searchState.isFinish;
     }
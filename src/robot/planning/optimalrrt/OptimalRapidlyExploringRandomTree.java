@@ -1,6 +1,7 @@
 package robot.planning.optimalrrt;
 
 import math.Vec3;
+import metrics.Metrics;
 import processing.core.PApplet;
 import robot.sensing.ConfigurationSpace;
 
@@ -14,17 +15,31 @@ public class OptimalRapidlyExploringRandomTree {
     public static float END_POINT_HINT_SIZE = 2f;
     public static float NEIGHBOUR_RADIUS = 10f;
     public static boolean DRAW_TREE = true;
+    // Informed RRT*: once a path exists sample only where a shorter path can exist and prune the rest of the tree
+    public static boolean INFORMED_SAMPLING = false;
+    public static int MAX_INFORMED_SAMPLE_ATTEMPTS = 100;
 
     final PApplet applet;
     final Vec3 startPosition;
     final Vec3 finishPosition;
     final Vertex root;
+    // Sampling box, required for informed sampling
+    final Vec3 minCorner;
+    final Vec3 maxCorner;
+    List<Vertex> finishVertices = new ArrayList<>();
+    float bestCost = Float.POSITIVE_INFINITY;
 
     public OptimalRapidlyExploringRandomTree(PApplet applet, Vec3 startPosition, Vec3 finishPosition) {
+        this(applet, startPosition, finishPosition, null, null);
+    }
+
+    public OptimalRapidlyExploringRandomTree(PApplet applet, Vec3 startPosition, Vec3 finishPosition, Vec3 minCorner, Vec3 maxCorner) {
         this.applet = applet;
         this.startPosition = Vec3.of(startPosition);
         this.finishPosition = Vec3.of(finishPosition);
         this.root = Vertex.of(applet, startPosition, 0);
+        this.minCorner = minCorner;
+        this.maxCorner = maxCorner;
     }
 
     private Vertex getNearestVertexFrom(final Vec3 position) {
@@ -46,6 +61,16 @@ public class OptimalRapidlyExploringRandomTree {
     }
 
     private Vertex getFinishVertex() {
+        if (INFORMED_SAMPLING && finishVertices.size() > 0) {
+            // Finish can be reached more than once, pick the shortest one
+            Vertex bestFinishVertex = finishVertices.get(0);
+            for (Vertex finishVertex : finishVertices) {
+                if (actualCostFromStart(finishVertex) < actualCostFromStart(bestFinishVertex)) {
+                    bestFinishVertex = finishVertex;
+                }
+            }
+            return bestFinishVertex;
+        }
         Stack<Vertex> fringe = new Stack<>();
         fringe.add(root);
         Vertex finishVertex = null;
@@ -107,6 +132,10 @@ public class OptimalRapidlyExploringRandomTree {
         float distanceFromStart = minCostVertex.costFromStart + minCostVertex.position.minus(newPosition).norm();
         Vertex newVertex = Vertex.of(applet, newPosition, distanceFromStart);
         minCostVertex.addChild(newVertex);
+        Metrics.TREE_NODES_ADDED.increment();
+        if (newVertex.position.equals(finishPosition)) {
+            finishVertices.add(newVertex);
+        }
         // rewiring
         for (Vertex neighbour : neighbours) {
             float cost = newVertex.costFromStart + newVertex.position.minus(neighbour.position).norm();
@@ -114,18 +143,120 @@ public class OptimalRapidlyExploringRandomTree {
                 neighbour.costFromStart = cost;
                 neighbour.parent.removeChild(neighbour);
                 newVertex.addChild(neighbour);
+                Metrics.REWIRES.increment();
             }
         }
     }
 
     public void growTree(List<Vec3> newPositions, ConfigurationSpace configurationSpace) {
+        long start = Metrics.TREE_GROWTH.start();
         for (Vec3 newPosition : newPositions) {
+            boolean isInformed = INFORMED_SAMPLING && minCorner != null && bestCost < Float.POSITIVE_INFINITY;
             // generate node at finish position with a small probability
             if (applet.random(1) <= 0.01) {
                 generateNextNode(finishPosition, configurationSpace);
             }
-            generateNextNode(newPosition, configurationSpace);
+            generateNextNode(isInformed ? sampleInformedPosition() : newPosition, configurationSpace);
+            if (INFORMED_SAMPLING && minCorner != null) {
+                updateBestCostAndPrune();
+            }
+        }
+        Metrics.TREE_GROWTH.recordSince(start);
+    }
+
+    private static float actualCostFromStart(Vertex vertex) {
+        // Rewiring does not update costs of descendants, so costs are summed along the path instead
+        float cost = 0;
+        while (vertex.parent != null) {
+            cost += vertex.position.minus(vertex.parent.position).norm();
+            vertex = vertex.parent;
         }
+        return cost;
+    }
+
+    private void updateBestCostAndPrune() {
+        float newBestCost = bestCost;
+        for (Vertex finishVertex : finishVertices) {
+            newBestCost = Math.min(newBestCost, actualCostFromStart(finishVertex));
+        }
+        if (newBestCost >= bestCost) {
+            return;
+        }
+        bestCost = newBestCost;
+        // Remove subtrees whose root cannot be on a path shorter than the best one, costs are refreshed on the way
+        float pruneCost = bestCost * (1 + 1e-4f);
+        int numVertices = 0;
+        List<Vertex> remainingFinishVertices = new ArrayList<>();
+        Stack<Vertex> fringe = new Stack<>();
+        fringe.add(root);
+        while (fringe.size() > 0) {
+            Vertex node = fringe.pop();
+            numVertices++;
+            if (node.position.equals(finishPosition)) {
+                remainingFinishVertices.add(node);
+            }
+            for (Vertex child : new ArrayList<>(node.getChildren())) {
+                child.costFromStart = node.costFromStart + node.position.minus(child.position).norm();
+                if (child.costFromStart + child.position.minus(finishPosition).norm() > pruneCost) {
+                    node.removeChild(child);
+                } else {
+                    fringe.add(child);
+                }
+            }
+        }
+        finishVertices = remainingFinishVertices;
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("Informed RRT* best cost: " + bestCost + ", # vertices after pruning: " + numVertices);
+        }
+    }
+
+    private Vec3 sampleInformedPosition() {
+        // Uniform sample inside the prolate hyperspheroid with foci start and finish and transverse diameter best cost
+        // Flat dimensions of the sampling box are left out so that samples stay in the sampling box
+        Vec3 center = startPosition.plus(finishPosition).scale(0.5f);
+        float focalDistance = finishPosition.minus(startPosition).norm();
+        Vec3 majorAxis = focalDistance > 1e-6f ? finishPosition.minus(startPosition).scale(1 / focalDistance) : Vec3.of(1, 0, 0);
+        float majorRadius = bestCost / 2;
+        float minorRadius = (float) Math.sqrt(Math.max(bestCost * bestCost - focalDistance * focalDistance, 0)) / 2;
+        List<Vec3> minorAxes = new ArrayList<>();
+        Vec3[] boxAxes = {Vec3.of(1, 0, 0), Vec3.of(0, 1, 0), Vec3.of(0, 0, 1)};
+        float[] boxExtents = {maxCorner.x - minCorner.x, maxCorner.y - minCorner.y, maxCorner.z - minCorner.z};
+        for (int i = 0; i < 3; i++) {
+            if (boxExtents[i] <= 0) {
+                continue;
+            }
+            // Gram Schmidt against the axes found so far
+            Vec3 axis = boxAxes[i].minus(majorAxis.scale(boxAxes[i].dot(majorAxis)));
+            for (Vec3 minorAxis : minorAxes) {
+                axis = axis.minus(minorAxis.scale(axis.dot(minorAxis)));
+            }
+            if (axis.norm() > 1e-3f && minorAxes.size() < 2) {
+                minorAxes.add(axis.normalize());
+            }
+        }
+        Vec3 sample = Vec3.of(center);
+        for (int attempt = 0; attempt < MAX_INFORMED_SAMPLE_ATTEMPTS; attempt++) {
+            // Unit ball sample by rejection from the unit cube
+            float u0 = applet.random(-1, 1);
+            float u1 = minorAxes.size() > 0 ? applet.random(-1, 1) : 0;
+            float u2 = minorAxes.size() > 1 ? applet.random(-1, 1) : 0;
+            if (u0 * u0 + u1 * u1 + u2 * u2 > 1) {
+                continue;
+            }
+            sample = center.plus(majorAxis.scale(majorRadius * u0));
+            if (minorAxes.size() > 0) {
+                sample = sample.plus(minorAxes.get(0).scale(minorRadius * u1));
+            }
+            if (minorAxes.size() > 1) {
+                sample = sample.plus(minorAxes.get(1).scale(minorRadius * u2));
+            }
+            if (sample.x >= minCorner.x && sample.x <= maxCorner.x
+                    && sample.y >= minCorner.y && sample.y <= maxCorner.y
+                    && sample.z >= minCorner.z && sample.z <= maxCorner.z) {
+                return sample;
+            }
+        }
+        return sample;
     }
 
     public void draw() {
@@ -168,7 +299,9 @@ public class OptimalRapidlyExploringRandomTree {
             }
             return path;
         }
-        PApplet.println("Could not find path to finish position");
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("Could not find path to finish position");
+        }
         return Collections.singletonList(startPosition);
     }
 }
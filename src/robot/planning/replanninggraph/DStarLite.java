@@ -0,0 +1,217 @@
+package robot.planning.replanninggraph;
+
+import metrics.Metrics;
+import processing.core.PApplet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+class DStarLite {
+    // Searches backwards from finish to the (moving) start so that search effort survives start changes
+    // Only vertices affected by removed edges are repaired on replanning
+    static class QueueEntry implements Comparable<QueueEntry> {
+        final Vertex vertex;
+        final float k1;
+        final float k2;
+        final int stamp;
+
+        QueueEntry(Vertex vertex, float k1, float k2, int stamp) {
+            this.vertex = vertex;
+            this.k1 = k1;
+            this.k2 = k2;
+            this.stamp = stamp;
+        }
+
+        boolean isStale() {
+            return !vertex.dStarLiteState.isInQueue || vertex.dStarLiteState.stamp != stamp;
+        }
+
+        boolean isLessThan(float otherK1, float otherK2) {
+            return k1 < otherK1 || (k1 == otherK1 && k2 < otherK2);
+        }
+
+        @Override
+        public int compareTo(QueueEntry other) {
+            int compareK1 = Float.compare(k1, other.k1);
+            if (compareK1 != 0) {
+                return compareK1;
+            }
+            return Float.compare(k2, other.k2);
+        }
+    }
+
+    final List<Vertex> vertices;
+    final Vertex finish;
+    final PriorityQueue<QueueEntry> queue = new PriorityQueue<>();
+    boolean isInitialized = false;
+    Vertex lastStart = null;
+    float km = 0;
+
+    DStarLite(List<Vertex> vertices, Vertex finish) {
+        this.vertices = vertices;
+        this.finish = finish;
+    }
+
+    List<Vertex> plan(final Vertex start, final Collection<Vertex> changedVertices) {
+        if (!isInitialized) {
+            initialize(start);
+        } else {
+            // Start moved => all keys in queue are lower bounds by at most h(lastStart, start)
+            km += heuristic(lastStart, start);
+            lastStart = start;
+            for (Vertex vertex : changedVertices) {
+                updateVertex(start, vertex);
+            }
+        }
+        int numVerticesExpanded = computeShortestPath(start);
+        if (start.dStarLiteState.g == Float.POSITIVE_INFINITY) {
+            if (Metrics.isLoggingQueries()) {
+                PApplet.println("Could not reach finish, # vertices expanded: " + numVerticesExpanded);
+            }
+            return Collections.singletonList(start);
+        }
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("Reached finish, # vertices expanded: " + numVerticesExpanded);
+        }
+        return extractPath(start);
+    }
+
+    private void initialize(final Vertex start) {
+        queue.clear();
+        for (Vertex vertex : vertices) {
+            vertex.dStarLiteState.reset();
+        }
+        km = 0;
+        lastStart = start;
+        finish.dStarLiteState.rhs = 0;
+        insert(start, finish);
+        isInitialized = true;
+    }
+
+    private static float heuristic(final Vertex v1, final Vertex v2) {
+        return v1.position.minus(v2.position).norm();
+    }
+
+    private static float cost(final Vertex from, final Vertex to) {
+        // Only edges still in the graph between vertices outside obstacles are traversable
+        if (!from.isOutsideObstacle || !to.isOutsideObstacle) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return from.position.minus(to.position).norm();
+    }
+
+    private float key1(final Vertex start, final Vertex vertex) {
+        return Math.min(vertex.dStarLiteState.g, vertex.dStarLiteState.rhs) + heuristic(start, vertex) + km;
+    }
+
+    private static float key2(final Vertex vertex) {
+        return Math.min(vertex.dStarLiteState.g, vertex.dStarLiteState.rhs);
+    }
+
+    private void insert(final Vertex start, final Vertex vertex) {
+        Vertex.DStarLiteState state = vertex.dStarLiteState;
+        state.stamp++;
+        state.isInQueue = true;
+        queue.add(new QueueEntry(vertex, key1(start, vertex), key2(vertex), state.stamp));
+        Metrics.HEAP_OPERATIONS.increment();
+    }
+
+    private void remove(final Vertex vertex) {
+        // Lazy removal, stale entries are skipped when they reach the top of the queue
+        vertex.dStarLiteState.isInQueue = false;
+    }
+
+    private QueueEntry top() {
+        while (queue.size() > 0 && queue.peek().isStale()) {
+            queue.remove();
+            Metrics.HEAP_OPERATIONS.increment();
+        }
+        return queue.peek();
+    }
+
+    private void updateVertex(final Vertex start, final Vertex vertex) {
+        Vertex.DStarLiteState state = vertex.dStarLiteState;
+        if (vertex != finish) {
+            float rhs = Float.POSITIVE_INFINITY;
+            for (Vertex neighbour : vertex.neighbours) {
+                rhs = Math.min(rhs, cost(vertex, neighbour) + neighbour.dStarLiteState.g);
+            }
+            state.rhs = rhs;
+        }
+        remove(vertex);
+        if (state.g != state.rhs) {
+            insert(start, vertex);
+        }
+    }
+
+    private int computeShortestPath(final Vertex start) {
+        int numVerticesExpanded = 0;
+        while (true) {
+            QueueEntry top = top();
+            Vertex.DStarLiteState startState = start.dStarLiteState;
+            if (top == null) {
+                break;
+            }
+            if (!top.isLessThan(key1(start, start), key2(start)) && startState.rhs == startState.g) {
+                break;
+            }
+            queue.remove();
+            Metrics.HEAP_OPERATIONS.increment();
+            Vertex vertex = top.vertex;
+            Vertex.DStarLiteState state = vertex.dStarLiteState;
+            float newK1 = key1(start, vertex);
+            float newK2 = key2(vertex);
+            if (top.isLessThan(newK1, newK2)) {
+                // Key was outdated because the start moved
+                insert(start, vertex);
+                continue;
+            }
+            numVerticesExpanded++;
+            Metrics.NODE_EXPANSIONS.increment();
+            vertex.searchState.setExplored();
+            state.isInQueue = false;
+            if (state.g > state.rhs) {
+                // Over consistent
+                state.g = state.rhs;
+                for (Vertex neighbour : vertex.neighbours) {
+                    updateVertex(start, neighbour);
+                }
+            } else {
+                // Under consistent
+                state.g = Float.POSITIVE_INFINITY;
+                updateVertex(start, vertex);
+                for (Vertex neighbour : vertex.neighbours) {
+                    updateVertex(start, neighbour);
+                }
+            }
+        }
+        return numVerticesExpanded;
+    }
+
+    private List<Vertex> extractPath(final Vertex start) {
+        List<Vertex> path = new ArrayList<>();
+        path.add(start);
+        Vertex current = start;
+        // A path can never be longer than the number of vertices
+        while (current != finish && path.size() <= vertices.size()) {
+            Vertex next = null;
+            float minCost = Float.POSITIVE_INFINITY;
+            for (Vertex neighbour : current.neighbours) {
+                float cost = cost(current, neighbour) + neighbour.dStarLiteState.g;
+                if (cost < minCost) {
+                    minCost = cost;
+                    next = neighbour;
+                }
+            }
+            if (next == null) {
+                return Collections.singletonList(start);
+            }
+            path.add(next);
+            current = next;
+        }
+        return path;
+    }
+}
@@ -1,6 +1,7 @@
 package robot.planning.replanninggraph;
 
 import math.Vec3;
+import metrics.Metrics;
 import processing.core.PApplet;
 import robot.sensing.ConfigurationSpace;
 
@@ -15,6 +16,9 @@ public class ReplanningGraph {
     public final Vertex start;
     final Vertex finish;
     final List<Vertex> vertices = new ArrayList<>();
+    // Vertices whose edges changed since last D* lite search
+    final Set<Vertex> changedVertices = new LinkedHashSet<>();
+    final DStarLite dStarLite;
 
     public ReplanningGraph(PApplet parent, Vec3 startPosition, Vec3 finishPosition) {
         this.parent = parent;
@@ -22,6 +26,7 @@ public class ReplanningGraph {
         this.finish = Vertex.finish(parent, finishPosition, 0);
         this.vertices.add(start);
         this.vertices.add(finish);
+        this.dStarLite = new DStarLite(vertices, finish);
     }
 
     public void generateGraph(List<Vec3> newVertexPositions, float maxEdgeLen) {
@@ -70,6 +75,7 @@ public class ReplanningGraph {
     }
 
     public boolean senseAndUpdate(Vec3 center, float radius, ConfigurationSpace configurationSpace) {
+        long start = Metrics.REPLANNING.start();
         boolean obstaclesDetected = false;
         List<Vertex> sensedVertices = new ArrayList<>();
         for (Vertex vertex : vertices) {
@@ -82,6 +88,7 @@ public class ReplanningGraph {
         for (Vertex vertex : sensedVertices) {
             if (configurationSpace.doesVertexIntersectSomeObstacle(vertex.position)) {
                 vertex.setInsideObstacle();
+                changedVertices.add(vertex);
                 obstaclesDetected = true;
             }
         }
@@ -96,9 +103,12 @@ public class ReplanningGraph {
             // Actually remove them here; all this to avoid java.util.ConcurrentModificationException
             for (Vertex neighbour : neighboursToRemove) {
                 vertex.removeNeighbour(neighbour);
+                changedVertices.add(vertex);
+                changedVertices.add(neighbour);
                 obstaclesDetected = true;
             }
         }
+        Metrics.REPLANNING.recordSince(start);
         return obstaclesDetected;
     }
 
@@ -116,7 +126,10 @@ public class ReplanningGraph {
     }
 
     public List<Vertex> dfs(final Vertex start) {
-        PApplet.println("DFS");
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("DFS");
+        }
+        long searchStart = Metrics.SEARCH.start();
 
         resetSearchState();
         final Stack<Vertex> fringe = new Stack<>();
@@ -130,7 +143,11 @@ public class ReplanningGraph {
             numVerticesExplored++;
             // Check if finish
             if (current.isFinishVertex()) {
-                PApplet.println("Reached finish, # vertices explored: " + numVerticesExplored);
+                if (Metrics.isLoggingQueries()) {
+                    PApplet.println("Reached finish, # vertices explored: " + numVerticesExplored);
+                }
+                Metrics.NODE_EXPANSIONS.add(numVerticesExplored);
+                Metrics.SEARCH.recordSince(searchStart);
                 return finish.searchState.pathFromStart;
             }
             // Mark this vertex as explored
@@ -143,7 +160,11 @@ public class ReplanningGraph {
             }
         }
 
-        PApplet.println("Could not reach finish, # vertices explored: " + numVerticesExplored);
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("Could not reach finish, # vertices explored: " + numVerticesExplored);
+        }
+        Metrics.NODE_EXPANSIONS.add(numVerticesExplored);
+        Metrics.SEARCH.recordSince(searchStart);
         return Collections.singletonList(start);
     }
 
@@ -151,10 +172,15 @@ public class ReplanningGraph {
         next.searchState.distanceFromStart = current.searchState.distanceFromStart + next.position.minus(current.position).norm();
         fringe.add(next);
         next.searchState.addToFringeFrom(current);
+        if (fringe instanceof PriorityQueue) {
+            Metrics.HEAP_OPERATIONS.increment();
+        }
     }
 
     private List<Vertex> search(final Vertex start, final Queue<Vertex> fringe) {
+        long searchStart = Metrics.SEARCH.start();
         int numVerticesExplored = 0;
+        boolean isHeap = fringe instanceof PriorityQueue;
 
         // Add start to fringe
         addToFringe(fringe, start, start);
@@ -162,9 +188,16 @@ public class ReplanningGraph {
             // Pop one vertex
             Vertex current = fringe.remove();
             numVerticesExplored++;
+            if (isHeap) {
+                Metrics.HEAP_OPERATIONS.increment();
+            }
             // Check if finish
             if (current.isFinishVertex()) {
-                PApplet.println("Reached finish, # vertices explored: " + numVerticesExplored);
+                if (Metrics.isLoggingQueries()) {
+                    PApplet.println("Reached finish, # vertices explored: " + numVerticesExplored);
+                }
+                Metrics.NODE_EXPANSIONS.add(numVerticesExplored);
+                Metrics.SEARCH.recordSince(searchStart);
                 return finish.searchState.pathFromStart;
             }
             // Mark this vertex as explored
@@ -177,25 +210,35 @@ public class ReplanningGraph {
             }
         }
 
-        PApplet.println("Could not reach finish, # vertices explored: " + numVerticesExplored);
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("Could not reach finish, # vertices explored: " + numVerticesExplored);
+        }
+        Metrics.NODE_EXPANSIONS.add(numVerticesExplored);
+        Metrics.SEARCH.recordSince(searchStart);
         return Collections.singletonList(start);
     }
 
     public List<Vertex> bfs(final Vertex start) {
-        PApplet.println("BFS");
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("BFS");
+        }
         resetSearchState();
         return search(start, new LinkedList<>());
     }
 
     public List<Vertex> ucs(final Vertex start) {
-        PApplet.println("UCS");
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("UCS");
+        }
         resetSearchState();
         return search(start, new PriorityQueue<>((v1, v2) ->
                 (int) (v1.searchState.distanceFromStart - v2.searchState.distanceFromStart)));
     }
 
     public List<Vertex> aStar(final Vertex start) {
-        PApplet.println("A*");
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("A*");
+        }
         resetSearchState();
         return search(start, new PriorityQueue<>((v1, v2) -> (int) (
                 (v1.searchState.distanceFromStart + v1.heuristicDistanceToFinish)
@@ -204,7 +247,9 @@ public class ReplanningGraph {
     }
 
     public List<Vertex> weightedAStar(final Vertex start, final float epislon) {
-        PApplet.println("Weighted A* with epsilon = " + epislon);
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("Weighted A* with epsilon = " + epislon);
+        }
         resetSearchState();
         return search(start, new PriorityQueue<>((v1, v2) -> (int) (
                 (v1.searchState.distanceFromStart + epislon * v1.heuristicDistanceToFinish)
@@ -212,4 +257,15 @@ public class ReplanningGraph {
         )));
     }
 
+    public List<Vertex> dStarLite(final Vertex start) {
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("D* lite");
+        }
+        long searchStart = Metrics.SEARCH.start();
+        List<Vertex> path = dStarLite.plan(start, changedVertices);
+        changedVertices.clear();
+        Metrics.SEARCH.recordSince(searchStart);
+        return path;
+    }
+
 }
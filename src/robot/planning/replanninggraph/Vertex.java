@@ -72,6 +72,21 @@ public class Vertex {
 
     final SearchState searchState;
 
+    class DStarLiteState {
+        float g = Float.POSITIVE_INFINITY;
+        float rhs = Float.POSITIVE_INFINITY;
+        boolean isInQueue = false;
+        int stamp = 0;
+
+        void reset() {
+            g = Float.POSITIVE_INFINITY;
+            rhs = Float.POSITIVE_INFINITY;
+            isInQueue = false;
+        }
+    }
+
+    final DStarLiteState dStarLiteState = new DStarLiteState();
+
     static Vertex start(PApplet parent, Vec3 position, float distanceToFinish) {
         return new Vertex(parent, START_ID, position, distanceToFinish);
     }
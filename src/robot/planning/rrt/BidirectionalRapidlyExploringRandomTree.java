@@ -0,0 +1,158 @@
+package robot.planning.rrt;
+
+import math.Vec3;
+import metrics.Metrics;
+import processing.core.PApplet;
+import robot.sensing.ConfigurationSpace;
+
+import java.util.*;
+
+public class BidirectionalRapidlyExploringRandomTree {
+    // RRT-Connect: one tree from start and one from finish, every sample extends one tree and greedily connects the other
+    public static float GROWTH_LIMIT = 20f;
+    public static float END_POINT_HINT_SIZE = 2f;
+    public static boolean DRAW_TREE = true;
+
+    final PApplet applet;
+    final Vec3 startPosition;
+    final Vec3 finishPosition;
+    final List<Vertex> startTree = new ArrayList<>();
+    final List<Vertex> finishTree = new ArrayList<>();
+    Vertex startTreeMeetingVertex = null;
+    Vertex finishTreeMeetingVertex = null;
+    int numSamples = 0;
+    int numSamplesToSolution = -1;
+    boolean isStartTreeExtended = true;
+
+    public BidirectionalRapidlyExploringRandomTree(PApplet applet, Vec3 startPosition, Vec3 finishPosition) {
+        this.applet = applet;
+        this.startPosition = Vec3.of(startPosition);
+        this.finishPosition = Vec3.of(finishPosition);
+        this.startTree.add(Vertex.of(applet, startPosition));
+        this.finishTree.add(Vertex.of(applet, finishPosition));
+    }
+
+    private static Vertex getNearestVertexFrom(final List<Vertex> tree, final Vec3 position) {
+        Vertex nearestVertex = tree.get(0);
+        float minDistance = position.minus(nearestVertex.position).norm();
+        for (Vertex vertex : tree) {
+            float distance = position.minus(vertex.position).norm();
+            if (distance < minDistance) {
+                minDistance = distance;
+                nearestVertex = vertex;
+            }
+        }
+        return nearestVertex;
+    }
+
+    private Vertex extend(final List<Vertex> tree, final Vertex nearestVertex, final Vec3 position, ConfigurationSpace configurationSpace) {
+        // Returns the new vertex or null if the step is blocked
+        Vec3 newPosition = position;
+        Vec3 growth = position.minus(nearestVertex.position);
+        if (growth.norm() > GROWTH_LIMIT) {
+            newPosition = nearestVertex.position.plus(growth.normalize().scale(GROWTH_LIMIT));
+        }
+        if (configurationSpace.doesEdgeIntersectSomeObstacle(nearestVertex.position, newPosition)) {
+            return null;
+        }
+        Vertex newVertex = Vertex.of(applet, newPosition);
+        nearestVertex.addChild(newVertex);
+        tree.add(newVertex);
+        Metrics.TREE_NODES_ADDED.increment();
+        return newVertex;
+    }
+
+    private Vertex connect(final List<Vertex> tree, final Vec3 position, ConfigurationSpace configurationSpace) {
+        // Keep extending towards position until it is reached (returns the vertex at position) or blocked (returns null)
+        Vertex current = getNearestVertexFrom(tree, position);
+        while (!current.position.equals(position)) {
+            current = extend(tree, current, position, configurationSpace);
+            if (current == null) {
+                return null;
+            }
+        }
+        return current;
+    }
+
+    public void growTree(List<Vec3> newPositions, ConfigurationSpace configurationSpace) {
+        long start = Metrics.TREE_GROWTH.start();
+        for (Vec3 newPosition : newPositions) {
+            if (numSamplesToSolution != -1) {
+                break;
+            }
+            numSamples++;
+            // Alternate the tree that explores and the tree that tries to connect
+            List<Vertex> extendedTree = isStartTreeExtended ? startTree : finishTree;
+            List<Vertex> connectingTree = isStartTreeExtended ? finishTree : startTree;
+            isStartTreeExtended = !isStartTreeExtended;
+            Vertex newVertex = extend(extendedTree, getNearestVertexFrom(extendedTree, newPosition), newPosition, configurationSpace);
+            if (newVertex == null) {
+                continue;
+            }
+            Vertex meetingVertex = connect(connectingTree, newVertex.position, configurationSpace);
+            if (meetingVertex == null) {
+                continue;
+            }
+            startTreeMeetingVertex = extendedTree == startTree ? newVertex : meetingVertex;
+            finishTreeMeetingVertex = extendedTree == startTree ? meetingVertex : newVertex;
+            numSamplesToSolution = numSamples;
+            if (Metrics.isLoggingQueries()) {
+                PApplet.println("RRT-Connect found first solution, # samples: " + numSamplesToSolution
+                        + ", # vertices: " + (startTree.size() + finishTree.size()));
+            }
+        }
+        Metrics.TREE_GROWTH.recordSince(start);
+    }
+
+    public int getNumSamplesToSolution() {
+        return numSamplesToSolution;
+    }
+
+    public void draw() {
+        if (DRAW_TREE) {
+            for (Vertex vertex : startTree) {
+                vertex.draw();
+            }
+            for (Vertex vertex : finishTree) {
+                vertex.draw();
+            }
+        }
+        // start
+        applet.pushMatrix();
+        applet.fill(0, 0, 1);
+        applet.noStroke();
+        applet.translate(startPosition.x, startPosition.y, startPosition.z);
+        applet.box(END_POINT_HINT_SIZE);
+        applet.popMatrix();
+        // finish
+        applet.pushMatrix();
+        applet.fill(0, 1, 0);
+        applet.noStroke();
+        applet.translate(finishPosition.x, finishPosition.y, finishPosition.z);
+        applet.box(END_POINT_HINT_SIZE);
+        applet.popMatrix();
+    }
+
+    public List<Vec3> search() {
+        if (numSamplesToSolution == -1) {
+            if (Metrics.isLoggingQueries()) {
+                PApplet.println("Could not find path to finish position, # samples: " + numSamples);
+            }
+            return Collections.singletonList(startPosition);
+        }
+        List<Vec3> path = new ArrayList<>();
+        // start tree part from start to meeting vertex
+        Vertex node = startTreeMeetingVertex;
+        while (node != null) {
+            path.add(0, node.position);
+            node = node.parent;
+        }
+        // finish tree part from meeting vertex (already added) to finish
+        node = finishTreeMeetingVertex.parent;
+        while (node != null) {
+            path.add(node.position);
+            node = node.parent;
+        }
+        return path;
+    }
+}
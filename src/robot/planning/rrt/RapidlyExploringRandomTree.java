@@ -1,6 +1,7 @@
 package robot.planning.rrt;
 
 import math.Vec3;
+import metrics.Metrics;
 import processing.core.PApplet;
 import robot.sensing.ConfigurationSpace;
 
@@ -67,9 +68,11 @@ public class RapidlyExploringRandomTree {
             return;
         }
         nearestVertex.addChild(Vertex.of(applet, newPosition));
+        Metrics.TREE_NODES_ADDED.increment();
     }
 
     public void growTree(List<Vec3> newPositions, ConfigurationSpace configurationSpace) {
+        long start = Metrics.TREE_GROWTH.start();
         for (Vec3 newPosition : newPositions) {
             // generate node at finish position with a small probability
             if (applet.random(1) <= 0.01) {
@@ -77,6 +80,7 @@ public class RapidlyExploringRandomTree {
             }
             generateNextNode(newPosition, configurationSpace);
         }
+        Metrics.TREE_GROWTH.recordSince(start);
     }
 
     public void draw() {
@@ -119,7 +123,9 @@ public class RapidlyExploringRandomTree {
             }
             return path;
         }
-        PApplet.println("Could not find path to finish position");
+        if (Metrics.isLoggingQueries()) {
+            PApplet.println("Could not find path to finish position");
+        }
         return Collections.singletonList(startPosition);
     }
 }
@@ -0,0 +1,50 @@
+package robot.planning.sampling;
+
+import math.Vec3;
+import processing.core.PApplet;
+import robot.sensing.ConfigurationSpace;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BridgeTestSampler implements Sampler {
+    // Hsu et al.: draw a pair at a gaussian distance, if both ends are in collision and the midpoint is free
+    // the midpoint sits on a short bridge across free space, i.e. in a narrow passage
+    public static int MAX_ATTEMPTS_PER_POINT = 100;
+
+    final PApplet parent;
+    final UniformSampler uniformSampler;
+    final ConfigurationSpace configurationSpace;
+    final float standardDeviation;
+
+    public BridgeTestSampler(PApplet parent, Vec3 minCorner, Vec3 maxCorner, ConfigurationSpace configurationSpace, float standardDeviation) {
+        this.parent = parent;
+        this.uniformSampler = new UniformSampler(parent, minCorner, maxCorner);
+        this.configurationSpace = configurationSpace;
+        this.standardDeviation = standardDeviation;
+    }
+
+    @Override
+    public List<Vec3> sample(int numberOfPoints) {
+        List<Vec3> samples = new ArrayList<>();
+        int maxAttempts = numberOfPoints * MAX_ATTEMPTS_PER_POINT;
+        int numAttempts = 0;
+        while (samples.size() < numberOfPoints && numAttempts < maxAttempts) {
+            numAttempts++;
+            Vec3 p1 = uniformSampler.samplePoint();
+            if (!configurationSpace.doesVertexIntersectSomeObstacle(p1)) {
+                continue;
+            }
+            Vec3 p2 = GaussianSampler.gaussianNeighbour(parent, uniformSampler, p1, standardDeviation);
+            if (!configurationSpace.doesVertexIntersectSomeObstacle(p2)) {
+                continue;
+            }
+            Vec3 midpoint = p1.plus(p2).scale(0.5f);
+            if (!configurationSpace.doesVertexIntersectSomeObstacle(midpoint)) {
+                samples.add(midpoint);
+            }
+        }
+        PApplet.println("Bridge test sampler: " + samples.size() + " / " + numberOfPoints + " samples in " + numAttempts + " attempts");
+        return samples;
+    }
+}
@@ -0,0 +1,67 @@
+package robot.planning.sampling;
+
+import math.Vec3;
+import processing.core.PApplet;
+import robot.sensing.ConfigurationSpace;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class FreeSpaceSampler implements Sampler {
+    // Rejects samples of another sampler against the configuration space in batches until enough free ones are found
+    // Batches after the first are sized by the acceptance rate seen so far
+    public static int MAX_BATCHES = 32;
+    public static float BATCH_SLACK = 1.1f;
+    // Bounds on the # samples drawn in total and per batch, so that an (almost) full configuration space
+    // cannot make the wrapped sampler allocate without limit
+    public static int MAX_ATTEMPTS_PER_POINT = 100;
+    public static int MAX_BATCH_SIZE = 100000;
+
+    final Sampler sampler;
+    final ConfigurationSpace configurationSpace;
+
+    public FreeSpaceSampler(Sampler sampler, ConfigurationSpace configurationSpace) {
+        this.sampler = sampler;
+        this.configurationSpace = configurationSpace;
+    }
+
+    @Override
+    public List<Vec3> sample(int numberOfPoints) {
+        List<Vec3> samples = new ArrayList<>();
+        long maxDrawn = (long) numberOfPoints * MAX_ATTEMPTS_PER_POINT;
+        long maxBatchSize = Math.max(MAX_BATCH_SIZE, numberOfPoints);
+        long numDrawn = 0;
+        int numBatches = 0;
+        long nextBatchSize = numberOfPoints;
+        while (samples.size() < numberOfPoints && numBatches < MAX_BATCHES && numDrawn < maxDrawn) {
+            int batchSize = (int) Math.min(Math.min(nextBatchSize, maxBatchSize), maxDrawn - numDrawn);
+            if (batchSize <= 0) {
+                break;
+            }
+            numBatches++;
+            List<Vec3> batch = sampler.sample(batchSize);
+            if (batch.size() == 0) {
+                break;
+            }
+            numDrawn += batch.size();
+            for (Vec3 position : batch) {
+                if (samples.size() == numberOfPoints) {
+                    break;
+                }
+                if (!configurationSpace.doesVertexIntersectSomeObstacle(position)) {
+                    samples.add(position);
+                }
+            }
+            if (samples.size() == 0) {
+                // Nothing free yet, no estimate of the acceptance rate
+                nextBatchSize = 2 * nextBatchSize;
+                continue;
+            }
+            double acceptanceRate = (double) samples.size() / numDrawn;
+            nextBatchSize = (long) Math.ceil((numberOfPoints - samples.size()) / acceptanceRate * BATCH_SLACK);
+        }
+        PApplet.println("Free space sampler: " + samples.size() + " / " + numberOfPoints + " free samples out of "
+                + numDrawn + " drawn in " + numBatches + " batches");
+        return samples;
+    }
+}
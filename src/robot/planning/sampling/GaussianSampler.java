@@ -0,0 +1,63 @@
+package robot.planning.sampling;
+
+import math.Vec3;
+import processing.core.PApplet;
+import robot.sensing.ConfigurationSpace;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class GaussianSampler implements Sampler {
+    // Boor et al.: draw a pair at a gaussian distance and keep the free one if exactly one is free
+    // Samples concentrate near obstacle boundaries and never land inside obstacles
+    public static int MAX_ATTEMPTS_PER_POINT = 100;
+
+    final PApplet parent;
+    final UniformSampler uniformSampler;
+    final ConfigurationSpace configurationSpace;
+    final float standardDeviation;
+
+    public GaussianSampler(PApplet parent, Vec3 minCorner, Vec3 maxCorner, ConfigurationSpace configurationSpace, float standardDeviation) {
+        this.parent = parent;
+        this.uniformSampler = new UniformSampler(parent, minCorner, maxCorner);
+        this.configurationSpace = configurationSpace;
+        this.standardDeviation = standardDeviation;
+    }
+
+    static Vec3 gaussianNeighbour(PApplet parent, UniformSampler bounds, Vec3 p, float standardDeviation) {
+        // Flat axes stay flat, the neighbour is clamped to the sampling box
+        return Vec3.of(
+                perturb(parent, p.x, bounds.minCorner.x, bounds.maxCorner.x, standardDeviation),
+                perturb(parent, p.y, bounds.minCorner.y, bounds.maxCorner.y, standardDeviation),
+                perturb(parent, p.z, bounds.minCorner.z, bounds.maxCorner.z, standardDeviation)
+        );
+    }
+
+    private static float perturb(PApplet parent, float c, float min, float max, float standardDeviation) {
+        if (max <= min) {
+            return c;
+        }
+        return PApplet.constrain(c + parent.randomGaussian() * standardDeviation, min, max);
+    }
+
+    @Override
+    public List<Vec3> sample(int numberOfPoints) {
+        List<Vec3> samples = new ArrayList<>();
+        int maxAttempts = numberOfPoints * MAX_ATTEMPTS_PER_POINT;
+        int numAttempts = 0;
+        while (samples.size() < numberOfPoints && numAttempts < maxAttempts) {
+            numAttempts++;
+            Vec3 p1 = uniformSampler.samplePoint();
+            Vec3 p2 = gaussianNeighbour(parent, uniformSampler, p1, standardDeviation);
+            boolean isP1Free = !configurationSpace.doesVertexIntersectSomeObstacle(p1);
+            boolean isP2Free = !configurationSpace.doesVertexIntersectSomeObstacle(p2);
+            if (isP1Free && !isP2Free) {
+                samples.add(p1);
+            } else if (isP2Free && !isP1Free) {
+                samples.add(p2);
+            }
+        }
+        PApplet.println("Gaussian sampler: " + samples.size() + " / " + numberOfPoints + " samples in " + numAttempts + " attempts");
+        return samples;
+    }
+}
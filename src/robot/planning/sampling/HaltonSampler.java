@@ -0,0 +1,28 @@
+package robot.planning.sampling;
+
+import math.Vec3;
+
+public class HaltonSampler extends LowDiscrepancySampler {
+    // Radical inverse of the index in a different prime base per dimension
+    static final int[] BASES = {2, 3, 5};
+
+    public HaltonSampler(Vec3 minCorner, Vec3 maxCorner) {
+        super(minCorner, maxCorner);
+    }
+
+    static float radicalInverse(long index, int base) {
+        double inverse = 0;
+        double digitWeight = 1.0 / base;
+        while (index > 0) {
+            inverse += (index % base) * digitWeight;
+            index /= base;
+            digitWeight /= base;
+        }
+        return (float) inverse;
+    }
+
+    @Override
+    float coordinate(long index, int dimension) {
+        return radicalInverse(index, BASES[dimension]);
+    }
+}
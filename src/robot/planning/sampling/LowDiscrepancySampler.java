@@ -0,0 +1,52 @@
+package robot.planning.sampling;
+
+import math.Vec3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+abstract class LowDiscrepancySampler implements Sampler {
+    final float[] minCorner;
+    final float[] maxCorner;
+    // Axes with a non zero extent, flat axes (e.g. x in the 2D demos) would waste a sequence dimension
+    final int[] activeAxes;
+    // Position in the sequence, kept across calls so that repeated sampling keeps filling the gaps
+    long index = 1;
+
+    LowDiscrepancySampler(Vec3 minCorner, Vec3 maxCorner) {
+        this.minCorner = new float[]{minCorner.x, minCorner.y, minCorner.z};
+        this.maxCorner = new float[]{maxCorner.x, maxCorner.y, maxCorner.z};
+        int numActiveAxes = 0;
+        int[] axes = new int[3];
+        for (int axis = 0; axis < 3; axis++) {
+            if (this.maxCorner[axis] > this.minCorner[axis]) {
+                axes[numActiveAxes++] = axis;
+            }
+        }
+        this.activeAxes = new int[numActiveAxes];
+        System.arraycopy(axes, 0, activeAxes, 0, numActiveAxes);
+    }
+
+    // Coordinate in [0, 1) of the index th point of the sequence along a dimension
+    abstract float coordinate(long index, int dimension);
+
+    @Override
+    public List<Vec3> sample(int numberOfPoints) {
+        List<Vec3> samples = new ArrayList<>();
+        float[] point = new float[3];
+        for (int i = 0; i < numberOfPoints; i++) {
+            System.arraycopy(minCorner, 0, point, 0, 3);
+            for (int dimension = 0; dimension < activeAxes.length; dimension++) {
+                int axis = activeAxes[dimension];
+                point[axis] += coordinate(index, dimension) * (maxCorner[axis] - minCorner[axis]);
+            }
+            samples.add(Vec3.of(point[0], point[1], point[2]));
+            index++;
+        }
+        return samples;
+    }
+
+    public void reset() {
+        index = 1;
+    }
+}
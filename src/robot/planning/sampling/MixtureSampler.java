@@ -0,0 +1,38 @@
+package robot.planning.sampling;
+
+import math.Vec3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MixtureSampler implements Sampler {
+    // Splits the requested points among samplers by weight, e.g. mostly Halton for coverage plus some bridge test
+    // samples for narrow passages
+    final List<Sampler> samplers = new ArrayList<>();
+    final List<Float> weights = new ArrayList<>();
+
+    public MixtureSampler add(Sampler sampler, float weight) {
+        samplers.add(sampler);
+        weights.add(weight);
+        return this;
+    }
+
+    @Override
+    public List<Vec3> sample(int numberOfPoints) {
+        float totalWeight = 0;
+        for (Float weight : weights) {
+            totalWeight += weight;
+        }
+        List<Vec3> samples = new ArrayList<>();
+        int numAssigned = 0;
+        float cumulativeWeight = 0;
+        for (int i = 0; i < samplers.size(); i++) {
+            cumulativeWeight += weights.get(i);
+            // Rounding the cumulative share makes the counts add up to numberOfPoints
+            int numAssignedAfter = Math.round(numberOfPoints * cumulativeWeight / totalWeight);
+            samples.addAll(samplers.get(i).sample(numAssignedAfter - numAssigned));
+            numAssigned = numAssignedAfter;
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,10 @@
+package robot.planning.sampling;
+
+import math.Vec3;
+
+import java.util.List;
+
+public interface Sampler {
+    // Returns up to numberOfPoints positions, samplers that reject may return fewer
+    List<Vec3> sample(int numberOfPoints);
+}
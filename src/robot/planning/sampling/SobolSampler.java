@@ -0,0 +1,48 @@
+package robot.planning.sampling;
+
+import math.Vec3;
+
+public class SobolSampler extends LowDiscrepancySampler {
+    // Direction numbers of the first three Sobol dimensions (Joe and Kuo), 32 bits each
+    // dimension 0 is van der Corput, 1 uses the polynomial x + 1, 2 uses x^2 + x + 1
+    static final int NUM_BITS = 32;
+    static final int[][] DIRECTIONS = new int[3][NUM_BITS];
+
+    static {
+        for (int k = 0; k < NUM_BITS; k++) {
+            DIRECTIONS[0][k] = 1 << (NUM_BITS - 1 - k);
+        }
+        initDirections(DIRECTIONS[1], 1, 0, new int[]{1});
+        initDirections(DIRECTIONS[2], 2, 1, new int[]{1, 3});
+    }
+
+    private static void initDirections(int[] v, int degree, int coefficients, int[] initialNumbers) {
+        for (int k = 0; k < degree; k++) {
+            v[k] = initialNumbers[k] << (NUM_BITS - 1 - k);
+        }
+        for (int k = degree; k < NUM_BITS; k++) {
+            v[k] = v[k - degree] ^ (v[k - degree] >>> degree);
+            for (int j = 1; j < degree; j++) {
+                if (((coefficients >>> (degree - 1 - j)) & 1) == 1) {
+                    v[k] ^= v[k - j];
+                }
+            }
+        }
+    }
+
+    public SobolSampler(Vec3 minCorner, Vec3 maxCorner) {
+        super(minCorner, maxCorner);
+    }
+
+    @Override
+    float coordinate(long index, int dimension) {
+        int x = 0;
+        for (int k = 0; k < NUM_BITS && index > 0; k++, index >>>= 1) {
+            if ((index & 1) == 1) {
+                x ^= DIRECTIONS[dimension][k];
+            }
+        }
+        // Dropping the low bits keeps the float strictly below 1
+        return (x >>> 8) / (float) (1 << 24);
+    }
+}
@@ -0,0 +1,36 @@
+package robot.planning.sampling;
+
+import math.Vec3;
+import processing.core.PApplet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class UniformSampler implements Sampler {
+    final PApplet parent;
+    final Vec3 minCorner;
+    final Vec3 maxCorner;
+
+    public UniformSampler(PApplet parent, Vec3 minCorner, Vec3 maxCorner) {
+        this.parent = parent;
+        this.minCorner = minCorner;
+        this.maxCorner = maxCorner;
+    }
+
+    Vec3 samplePoint() {
+        return Vec3.of(
+                parent.random(minCorner.x, maxCorner.x),
+                parent.random(minCorner.y, maxCorner.y),
+                parent.random(minCorner.z, maxCorner.z)
+        );
+    }
+
+    @Override
+    public List<Vec3> sample(int numberOfPoints) {
+        List<Vec3> samples = new ArrayList<>();
+        for (int i = 0; i < numberOfPoints; i++) {
+            samples.add(samplePoint());
+        }
+        return samples;
+    }
+}
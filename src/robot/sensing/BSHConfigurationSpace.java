@@ -1,6 +1,7 @@
 package robot.sensing;
 
 import math.Vec3;
+import metrics.Metrics;
 import robot.input.SphericalAgentDescription;
 import fixed.SphericalObstacle;
 import processing.core.PApplet;
@@ -27,10 +28,13 @@ public class BSHConfigurationSpace extends ConfigurationSpace {
     final PApplet parent;
     final SphericalAgentDescription sphericalAgentDescription;
     final BoundingSphere root;
+    // The hierarchy is built once, so is the hash of the obstacles it was built from
+    final long sceneHash;
 
     public BSHConfigurationSpace(final PApplet parent, final SphericalAgentDescription sphericalAgentDescription, final List<SphericalObstacle> sphericalObstacles) {
         this.parent = parent;
         this.sphericalAgentDescription = sphericalAgentDescription;
+        this.sceneHash = hash(hash(EMPTY_SCENE_HASH, sphericalAgentDescription.radius), sphericalObstacles);
 
         if (sphericalObstacles.size() == 0) {
             throw new IllegalArgumentException("Need at least one obstacle");
@@ -130,6 +134,10 @@ public class BSHConfigurationSpace extends ConfigurationSpace {
         PApplet.println("BSH created, #parent spheres = " + numParentBoundingSpheres);
     }
 
+    public long sceneHash() {
+        return sceneHash;
+    }
+
     private boolean doesOneBoundAnother(BoundingSphere b1, BoundingSphere b2) {
         float distanceBtwSpheres = b2.center.minus(b1.center).norm();
         return distanceBtwSpheres <= Math.abs(b1.radius - b2.radius);
@@ -193,6 +201,7 @@ public class BSHConfigurationSpace extends ConfigurationSpace {
     }
 
     public boolean doesVertexIntersectSomeObstacle(final Vec3 p) {
+        Metrics.VERTEX_COLLISION_CHECKS.increment();
         return doesVertexIntersectSomeObstacleUnderThisBoundingSphere(p, root);
     }
 
@@ -217,6 +226,7 @@ public class BSHConfigurationSpace extends ConfigurationSpace {
     }
 
     public boolean doesEdgeIntersectSomeObstacle(final Vec3 p1, final Vec3 p2) {
+        Metrics.EDGE_COLLISION_CHECKS.increment();
         return doesEdgeIntersectSomeObstacleUnderThisBoundingSphere(p1, p2, root);
     }
 }
@@ -1,11 +1,39 @@
 package robot.sensing;
 
+import fixed.SphericalObstacle;
 import math.Vec3;
 
+import java.util.List;
+
 public abstract class ConfigurationSpace {
+    static final long EMPTY_SCENE_HASH = 0xcbf29ce484222325L;
+
     public abstract boolean doesVertexIntersectSomeObstacle(Vec3 p);
 
     public abstract boolean doesEdgeIntersectSomeObstacle(Vec3 p1, Vec3 p2);
 
     public abstract void draw();
+
+    // Changes whenever obstacles or the agent shape change, so that precomputed roadmaps of another scene are rejected
+    public abstract long sceneHash();
+
+    static long hash(long hash, float value) {
+        // FNV-1a over the bytes of the value
+        int bits = Float.floatToIntBits(value);
+        for (int i = 0; i < 4; i++) {
+            hash ^= (bits >>> (8 * i)) & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    static long hash(long hash, List<SphericalObstacle> sphericalObstacles) {
+        for (SphericalObstacle sphericalObstacle : sphericalObstacles) {
+            hash = hash(hash, sphericalObstacle.center.x);
+            hash = hash(hash, sphericalObstacle.center.y);
+            hash = hash(hash, sphericalObstacle.center.z);
+            hash = hash(hash, sphericalObstacle.radius);
+        }
+        return hash;
+    }
 }
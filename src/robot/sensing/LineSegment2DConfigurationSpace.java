@@ -1,6 +1,7 @@
 package robot.sensing;
 
 import math.Vec3;
+import metrics.Metrics;
 import robot.input.LineSegment2DAgentDescription;
 import fixed.SphericalObstacle;
 import processing.core.PApplet;
@@ -21,7 +22,12 @@ public class LineSegment2DConfigurationSpace extends ConfigurationSpace {
         this.orientationScale = orientationScale;
     }
 
+    public long sceneHash() {
+        return hash(hash(hash(EMPTY_SCENE_HASH, description.length), orientationScale), sphericalObstacles);
+    }
+
     public boolean doesVertexIntersectSomeObstacle(final Vec3 pose) {
+        Metrics.VERTEX_COLLISION_CHECKS.increment();
         Vec3 p1Position = Vec3.of(pose);
         p1Position.x = 0;
         Vec3 p2Position = Vec3.of(pose);
@@ -60,6 +66,7 @@ public class LineSegment2DConfigurationSpace extends ConfigurationSpace {
     }
 
     public boolean doesEdgeIntersectSomeObstacleStricter(Vec3 pose1, Vec3 pose2) {
+        Metrics.EDGE_COLLISION_CHECKS.increment();
         // Considers a bounding sphere of the line centered at center of line and radius as length / 2
         // Checks for collision of bounding sphere and obstacles
         // This always returns true when there is a collision
@@ -0,0 +1,68 @@
+package robot.sensing;
+
+import fixed.SphericalObstacle;
+import math.SpatialHash;
+import math.Vec3;
+
+import java.util.Collections;
+import java.util.List;
+
+public class ObstacleBroadPhase {
+    final List<SphericalObstacle> sphericalObstacles;
+    final int numObstacles;
+    final float maxObstacleRadius;
+    // Bounding box of obstacle centers, queries are clamped to it
+    final Vec3 minCenter = Vec3.of(Float.POSITIVE_INFINITY);
+    final Vec3 maxCenter = Vec3.of(Float.NEGATIVE_INFINITY);
+    final SpatialHash<SphericalObstacle> obstacleHash;
+
+    public ObstacleBroadPhase(List<SphericalObstacle> sphericalObstacles) {
+        this.sphericalObstacles = sphericalObstacles;
+        this.numObstacles = sphericalObstacles.size();
+        float maxRadius = 0;
+        for (SphericalObstacle sphericalObstacle : sphericalObstacles) {
+            maxRadius = Math.max(maxRadius, sphericalObstacle.radius);
+            Vec3 center = sphericalObstacle.center;
+            minCenter.set(Math.min(minCenter.x, center.x), Math.min(minCenter.y, center.y), Math.min(minCenter.z, center.z));
+            maxCenter.set(Math.max(maxCenter.x, center.x), Math.max(maxCenter.y, center.y), Math.max(maxCenter.z, center.z));
+        }
+        this.maxObstacleRadius = maxRadius;
+        // Obstacles are hashed by center only, queries are grown by the biggest radius instead
+        this.obstacleHash = new SpatialHash<>(Math.max(2 * maxRadius, 1f));
+        for (SphericalObstacle sphericalObstacle : sphericalObstacles) {
+            obstacleHash.add(sphericalObstacle.center, sphericalObstacle);
+        }
+    }
+
+    public boolean isBuiltFrom(List<SphericalObstacle> sphericalObstacles) {
+        // Obstacles are assumed to be static, only additions and removals are detected
+        return this.sphericalObstacles == sphericalObstacles && numObstacles == sphericalObstacles.size();
+    }
+
+    public List<SphericalObstacle> getCandidates(Vec3 position, float interactionRadius) {
+        // Superset of obstacles whose surface is within interaction radius of position
+        if (Float.isInfinite(interactionRadius) || Float.isNaN(interactionRadius)) {
+            return sphericalObstacles;
+        }
+        float radius = interactionRadius + maxObstacleRadius;
+        float minX = Math.max(position.x - radius, minCenter.x), maxX = Math.min(position.x + radius, maxCenter.x);
+        float minY = Math.max(position.y - radius, minCenter.y), maxY = Math.min(position.y + radius, maxCenter.y);
+        float minZ = Math.max(position.z - radius, minCenter.z), maxZ = Math.min(position.z + radius, maxCenter.z);
+        if (minX > maxX || minY > maxY || minZ > maxZ) {
+            return Collections.emptyList();
+        }
+        // Walking more cells than there are obstacles is slower than the linear scan
+        if (obstacleHash.getNumCells(minX, minY, minZ, maxX, maxY, maxZ) > numObstacles) {
+            return sphericalObstacles;
+        }
+        return obstacleHash.getCandidates(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    public static ObstacleBroadPhase of(ObstacleBroadPhase current, List<SphericalObstacle> sphericalObstacles) {
+        // Reuse current broad phase if possible, rebuild otherwise
+        if (current != null && current.isBuiltFrom(sphericalObstacles)) {
+            return current;
+        }
+        return new ObstacleBroadPhase(sphericalObstacles);
+    }
+}
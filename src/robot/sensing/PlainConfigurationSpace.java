@@ -1,6 +1,7 @@
 package robot.sensing;
 
 import math.Vec3;
+import metrics.Metrics;
 import robot.input.SphericalAgentDescription;
 import fixed.SphericalObstacle;
 import processing.core.PApplet;
@@ -19,7 +20,12 @@ public class PlainConfigurationSpace extends ConfigurationSpace {
         this.sphericalObstacles = sphericalObstacles;
     }
 
+    public long sceneHash() {
+        return hash(hash(EMPTY_SCENE_HASH, sphericalAgentDescription.radius), sphericalObstacles);
+    }
+
     public boolean doesVertexIntersectSomeObstacle(Vec3 p) {
+        Metrics.VERTEX_COLLISION_CHECKS.increment();
         for (SphericalObstacle sphericalObstacle : sphericalObstacles) {
             if (p.minus(sphericalObstacle.center).norm() <= sphericalObstacle.radius + sphericalAgentDescription.radius) {
                 return true;
@@ -33,6 +39,7 @@ public class PlainConfigurationSpace extends ConfigurationSpace {
     }
 
     public boolean doesEdgeIntersectSomeObstacle(Vec3 p1, Vec3 p2) {
+        Metrics.EDGE_COLLISION_CHECKS.increment();
         for (SphericalObstacle sphericalObstacle : sphericalObstacles) {
             if (doesVertexIntersectThisSphere(p1, sphericalObstacle) || doesVertexIntersectThisSphere(p2, sphericalObstacle)) {
                 return true;